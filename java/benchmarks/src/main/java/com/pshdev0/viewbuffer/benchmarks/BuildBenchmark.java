@@ -0,0 +1,37 @@
+package com.pshdev0.viewbuffer.benchmarks;
+
+import com.pshdev0.viewbuffer.ViewBuffer;
+import com.pshdev0.viewbuffer.ViewBufferArena;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builder throughput: struct, addInt32, addString and addArrayItem at realistic document sizes.
+ * The arena is reset before each document, as a long-running producer would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({"100", "10000"})
+    int size;
+
+    final ViewBufferArena arena = new ViewBufferArena();
+
+    @Benchmark
+    public ViewBuffer fruitBasket() {
+        arena.reset();
+        return Documents.fruitBasket(arena, size);
+    }
+
+    @Benchmark
+    public ViewBuffer pipeline() {
+        arena.reset();
+        return Documents.pipeline(arena, size / 10, 10);
+    }
+}
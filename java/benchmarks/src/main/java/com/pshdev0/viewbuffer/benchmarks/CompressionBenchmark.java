@@ -0,0 +1,53 @@
+package com.pshdev0.viewbuffer.benchmarks;
+
+import com.pshdev0.viewbuffer.Compression;
+import com.pshdev0.viewbuffer.ViewBuffer;
+import com.pshdev0.viewbuffer.ViewBufferArena;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression cost and ratio for single stream and chunked compression at several levels.
+ * The ratio is reported through the compressedBytes and blobBytes counters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"single", "chunked"})
+    String mode;
+
+    @Param({"1", "6", "9"})
+    int level;
+
+    ViewBuffer pipeline;
+    Compression compression;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Sizes {
+        public long compressedBytes;
+        public long blobBytes;
+    }
+
+    @Setup
+    public void setup() {
+        pipeline = Documents.pipeline(new ViewBufferArena(), 500, 20);
+        var base = mode.equals("chunked") ? Compression.chunked(1 << 18) : Compression.DEFAULT;
+        compression = base.withLevel(level);
+    }
+
+    @Benchmark
+    public ByteBuffer compress(Sizes sizes) {
+        var out = pipeline.asByteBuffer((short) 1, true, true, compression);
+        sizes.compressedBytes += out.getInt(12);
+        sizes.blobBytes += out.getInt(16);
+        return out;
+    }
+}
@@ -0,0 +1,110 @@
+package com.pshdev0.viewbuffer.benchmarks;
+
+import com.pshdev0.viewbuffer.ViewBuffer;
+import com.pshdev0.viewbuffer.ViewBufferArena;
+
+/**
+ * Scaled-up versions of the document shapes used by the tests.
+ */
+final class Documents {
+
+    private Documents() {}
+
+    /**
+     * The FruitTest shape with the given number of fruits.
+     */
+    static ViewBuffer fruitBasket(ViewBufferArena arena, int fruits) {
+        var fruitsArray = arena.arrayOf("Fruit");
+        for (int i = 0; i < fruits; i++) {
+            var fruit = arena.struct("Fruit");
+            fruit.addString("name", "fruit_" + i);
+            fruit.addInt32("weight", 100 + i % 100);
+            fruit.addArraySlice("data", arena.byteArray((byte) i, (byte) (i >> 8), (byte) 3, (byte) 4, (byte) 5));
+            fruitsArray.addArrayItem(fruit);
+        }
+
+        var core = arena.struct("Core");
+        core.addString("title", "Fruit Basket");
+        core.addString("subtitle", "Tropical Edition");
+        core.addString("footer", "Enjoy responsibly");
+        core.addArraySlice("fruits", fruitsArray);
+        return core;
+    }
+
+    /**
+     * The SensorPipelineTest shape with the given number of networks, devices per network and widgets.
+     */
+    static ViewBuffer pipeline(ViewBufferArena arena, int networks, int devicesPerNetwork) {
+        var networkArray = arena.arrayOf("Network");
+        for (int n = 0; n < networks; n++) {
+            var network = arena.struct("Network");
+            network.addString("id", "Network_" + n);
+            var deviceArray = arena.arrayOf("Device");
+            for (int d = 0; d < devicesPerNetwork; d++) {
+                var device = arena.struct("Device");
+                device.addString("id", "Device_" + n + "_" + d);
+                device.addInt32("statusCode", 100 + d % 7);
+                deviceArray.addArrayItem(device);
+            }
+            network.addArraySlice("devices", deviceArray);
+            networkArray.addArrayItem(network);
+        }
+
+        var dashboardArray = arena.arrayOf("Dashboard");
+        var dashboard = arena.struct("Dashboard");
+        dashboard.addString("id", "MainDashboard");
+        var theme = arena.struct("Theme");
+        theme.addFloat32("hue", 0.1f);
+        theme.addFloat32("saturation", 0.2f);
+        theme.addFloat32("brightness", 0.3f);
+        dashboard.addStruct("theme", theme);
+        var widgetArray = arena.arrayOf("Widget");
+        for (int w = 0; w < networks; w++) {
+            var widget = arena.struct("Widget");
+            widget.addString("id", "Gauge" + w);
+            widget.addString("type", "gauge");
+            widget.addBool("enabled", true);
+            widget.addFloat32("posX", 15.0f * w);
+            widget.addFloat32("posY", 25.0f);
+            widgetArray.addArrayItem(widget);
+        }
+        dashboard.addArraySlice("widgets", widgetArray);
+        dashboardArray.addArrayItem(dashboard);
+
+        var transformArray = arena.arrayOf("Transform");
+        var transform = arena.struct("Transform");
+        transform.addString("id", "FilterA");
+        transform.addInt32("priority", 5);
+        var stepArray = arena.arrayOf("Step");
+        for (int s = 0; s < networks; s++) {
+            var step = arena.struct("Step");
+            step.addInt32("phase", s);
+            step.addInt32("durationMs", 100 * s);
+            stepArray.addArrayItem(step);
+        }
+        transform.addArraySlice("steps", stepArray);
+        transformArray.addArrayItem(transform);
+
+        var config = arena.struct("PipelineConfig");
+        config.addString("endpoint", "https://iot.example.com");
+        config.addArraySlice("networks", networkArray);
+        config.addArraySlice("dashboards", dashboardArray);
+        config.addArraySlice("transforms", transformArray);
+        return config;
+    }
+
+    /**
+     * A tree of nested Node arrays, depth levels deep with the given fanout at each level.
+     */
+    static ViewBuffer tree(ViewBufferArena arena, int depth, int fanout) {
+        var node = arena.struct("Node");
+        node.addString("id", "depth_" + depth);
+        node.addInt32("depth", depth);
+        var children = arena.arrayOf("Node");
+        if (depth > 0) {
+            for (int c = 0; c < fanout; c++) children.addArrayItem(tree(arena, depth - 1, fanout));
+        }
+        node.addArraySlice("children", children);
+        return node;
+    }
+}
@@ -0,0 +1,73 @@
+package com.pshdev0.viewbuffer.benchmarks;
+
+import com.pshdev0.viewbuffer.AsyncFileWriter;
+import com.pshdev0.viewbuffer.ViewBuffer;
+import com.pshdev0.viewbuffer.ViewBufferArena;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to write a batch of documents to their own files: synchronously with writeBuffer, synchronously forcing
+ * each file, and through an AsyncFileWriter which forces each group of files together.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileWriteBenchmark {
+
+    @Param({"64"})
+    int documents;
+
+    Path dir;
+    ViewBuffer root;
+    AsyncFileWriter writer;
+    CompletableFuture<?>[] written;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("viewbuffer-bench");
+        root = Documents.pipeline(new ViewBufferArena(), 10, 10);
+        writer = AsyncFileWriter.start((short) 1, true, true, null);
+        written = new CompletableFuture<?>[documents];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void writeBuffer() throws IOException {
+        for(var d = 0; d < documents; d++) root.writeBuffer(dir.resolve(d + ".vbuf").toString(), (short) 1, true, true, null);
+    }
+
+    @Benchmark
+    public void writeBufferForced() throws IOException {
+        for(var d = 0; d < documents; d++) {
+            try (var channel = FileChannel.open(dir.resolve(d + ".vbuf"), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                root.writeTo(channel, (short) 1, true, true, null);
+                channel.force(false);
+            }
+        }
+    }
+
+    @Benchmark
+    public void asyncGroupCommit() throws Exception {
+        for(var d = 0; d < documents; d++) written[d] = writer.write(dir.resolve(d + ".vbuf"), root);
+        CompletableFuture.allOf(written).join();
+    }
+}
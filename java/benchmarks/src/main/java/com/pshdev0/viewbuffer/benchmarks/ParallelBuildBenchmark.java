@@ -0,0 +1,47 @@
+package com.pshdev0.viewbuffer.benchmarks;
+
+import com.pshdev0.viewbuffer.ViewBuffer;
+import com.pshdev0.viewbuffer.ViewBufferArena;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A large Device array built one element at a time against {@link ViewBufferArena#parallelArrayOf}, which
+ * should scale with the cores available to the common fork-join pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelBuildBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    final ViewBufferArena arena = new ViewBufferArena();
+
+    static ViewBuffer device(ViewBufferArena arena, int d) {
+        var device = arena.struct("Device");
+        device.addString("id", "Device_" + d);
+        device.addInt32("statusCode", 100 + d % 7);
+        device.addArraySlice("readings", arena.floatArray(d, d * 0.5f, d * 0.25f));
+        return device;
+    }
+
+    @Benchmark
+    public ViewBuffer sequential() {
+        arena.reset();
+        var deviceArray = arena.arrayOf("Device");
+        for (int d = 0; d < size; d++) deviceArray.addArrayItem(device(arena, d));
+        return deviceArray;
+    }
+
+    @Benchmark
+    public ViewBuffer parallel() {
+        arena.reset();
+        return arena.parallelArrayOf("Device", size, ParallelBuildBenchmark::device);
+    }
+}
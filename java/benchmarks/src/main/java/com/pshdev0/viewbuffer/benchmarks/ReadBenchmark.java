@@ -0,0 +1,67 @@
+package com.pshdev0.viewbuffer.benchmarks;
+
+import com.pshdev0.viewbuffer.Compression;
+import com.pshdev0.viewbuffer.ViewBufferArena;
+import com.pshdev0.viewbuffer.ViewBufferReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader cost: opening a document (header only) and walking every device in it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    @Param({"none", "single", "chunked"})
+    String compression;
+
+    ByteBuffer document;
+
+    @Setup
+    public void setup() {
+        var settings = switch (compression) {
+            case "single" -> Compression.DEFAULT;
+            case "chunked" -> Compression.chunked(1 << 16);
+            default -> null;
+        };
+        document = Documents.pipeline(new ViewBufferArena(), 1000, 10).asByteBuffer((short) 1, true, true, settings);
+    }
+
+    @Benchmark
+    public ViewBufferReader open() {
+        return ViewBufferReader.of(document);
+    }
+
+    @Benchmark
+    public long walk() {
+        var networks = ViewBufferReader.of(document).root("PipelineConfig").getSlice("networks");
+        long sum = 0;
+        for (int n = 0; n < networks.length(); n++) {
+            var devices = networks.getStruct(n).getSlice("devices");
+            for (int d = 0; d < devices.length(); d++) sum += devices.getStruct(d).getInt32("statusCode");
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int firstDevice() {
+        return firstDevice(ViewBufferReader.of(document));
+    }
+
+    @Benchmark
+    public int firstDevicePartial() {
+        return firstDevice(ViewBufferReader.of(document, true));
+    }
+
+    private static int firstDevice(ViewBufferReader reader) {
+        var networks = reader.root("PipelineConfig").getSlice("networks");
+        return networks.getStruct(0).getSlice("devices").getStruct(0).getInt32("statusCode");
+    }
+}
@@ -0,0 +1,61 @@
+package com.pshdev0.viewbuffer.benchmarks;
+
+import com.pshdev0.viewbuffer.ViewBuffer;
+import com.pshdev0.viewbuffer.ViewBufferArena;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * asByteBuffer and streaming latency against document size and nesting depth, uncompressed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+    @Param({"100", "10000"})
+    int size;
+
+    @Param({"2", "6"})
+    int depth;
+
+    ViewBuffer pipeline;
+    ViewBuffer tree;
+    ByteBuffer direct;
+
+    @Setup
+    public void setup() {
+        pipeline = Documents.pipeline(new ViewBufferArena(), size / 10, 10);
+        // keep roughly the same node count for each depth
+        var fanout = Math.max(2, (int) Math.round(Math.pow(size, 1.0 / depth)));
+        tree = Documents.tree(new ViewBufferArena(), depth, fanout);
+        direct = ByteBuffer.allocateDirect(pipeline.serializedSize(true, true));
+    }
+
+    @Benchmark
+    public ByteBuffer pipelineAsByteBuffer() {
+        return pipeline.asByteBuffer((short) 1, true, true, false);
+    }
+
+    @Benchmark
+    public ByteBuffer treeAsByteBuffer() {
+        return tree.asByteBuffer((short) 1, true, true, false);
+    }
+
+    @Benchmark
+    public long pipelineWriteTo() throws IOException {
+        return pipeline.writeTo(OutputStream.nullOutputStream(), (short) 1, true, true, false);
+    }
+
+    @Benchmark
+    public int pipelineWriteToDirectBuffer() {
+        return pipeline.writeTo(direct.clear(), (short) 1, true, true, null);
+    }
+}
@@ -0,0 +1,297 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes ViewBuffer documents to files on a background thread, so producers do not wait on the disk.
+ * <p>
+ * Documents are serialized on the calling thread, as arenas are not thread-safe, and queued for a single writer
+ * (virtual) thread. The queue is bounded: a producer blocks while it is full. The writer takes every document
+ * queued within the sync delay of the first one as a group, writes each to its file (a later document for the
+ * same file replacing an earlier one), then forces all the group's files to disk together, along with the directory
+ * entries of any files and directories it created, before completing their futures. A future completes with the
+ * number of bytes written once the file is durable, or exceptionally if opening, writing or forcing it failed. A
+ * failure fails every document of the group for that file, without affecting the rest of the group.
+ * <p>
+ * Futures complete on the writer thread, so a dependent stage added without an executor, e.g. with
+ * {@code thenAccept}, runs there and holds up every write behind it; add slow stages with the {@code *Async}
+ * methods instead. Should the writer thread stop unexpectedly, the writer closes, and every document not yet written
+ * fails, including any which producers were blocked queueing.
+ */
+public final class AsyncFileWriter implements Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final Duration DEFAULT_SYNC_DELAY = Duration.ofMillis(2);
+
+    private static final int MAX_GROUP_SIZE = 256; // files open at once
+    private static final int MAX_KNOWN_DIRECTORIES = 4096;
+    // directories cannot be opened to be forced on Windows, where a new directory entry is durable with its file
+    private static final boolean FORCE_DIRECTORIES = !System.getProperty("os.name").startsWith("Windows");
+
+    private record Request(Path path, ByteBuffer document, long length, CompletableFuture<Long> written) {}
+    private static final Request CLOSE = new Request(null, null, 0, null);
+
+    private final short userDefinedVersion;
+    private final boolean includeStructEncoding;
+    private final boolean includeStructEncodingVersionHash;
+    private final Compression compression;
+    private final long syncDelayNanos;
+    private final ArrayBlockingQueue<Request> queue;
+    private final Thread writer;
+    private final ReentrantLock enqueueLock = new ReentrantLock(); // so nothing is queued after the close marker
+    private volatile boolean closed = false;
+
+    // used by the writer thread only
+    private final HashSet<Path> directories = new HashSet<>(); // known to exist
+    private final LinkedHashMap<Path, FileChannel> channels = new LinkedHashMap<>(); // the group's files
+    private final LinkedHashMap<Path, ArrayList<Path>> newEntries = new LinkedHashMap<>(); // directory -> files relying on it
+    private final HashMap<Path, Exception> failures = new HashMap<>(); // the first failure of each of the group's files
+    private final ArrayList<Request> group = new ArrayList<>();
+
+    private AsyncFileWriter(short userDefinedVersion, boolean includeStructEncoding, boolean includeStructEncodingVersionHash,
+                            Compression compression, int queueCapacity, Duration syncDelay) {
+        this.userDefinedVersion = userDefinedVersion;
+        this.includeStructEncoding = includeStructEncoding;
+        this.includeStructEncodingVersionHash = includeStructEncodingVersionHash;
+        this.compression = compression;
+        syncDelayNanos = syncDelay.toNanos();
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = Thread.ofVirtual().name("viewbuffer-writer").start(this::run);
+    }
+
+    public static AsyncFileWriter start(short userDefinedVersion, boolean includeStructEncoding,
+                                        boolean includeStructEncodingVersionHash, Compression compression) {
+        return start(userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression,
+                DEFAULT_QUEUE_CAPACITY, DEFAULT_SYNC_DELAY);
+    }
+
+    /**
+     * Starts a writer. Documents written as {@link ViewBuffer}s are serialized with the given settings, as with
+     * {@link ViewBuffer#writeBuffer}.
+     *
+     * @param compression   the blob compression settings, or null to leave blobs uncompressed
+     * @param queueCapacity the number of documents which may wait to be written before producers block
+     * @param syncDelay     how long a group waits for more documents before its files are forced to disk, trading
+     *                      the latency of each write for fewer forces
+     */
+    public static AsyncFileWriter start(short userDefinedVersion, boolean includeStructEncoding,
+                                        boolean includeStructEncodingVersionHash, Compression compression,
+                                        int queueCapacity, Duration syncDelay) {
+        if(syncDelay.isNegative()) throw new IllegalArgumentException("Sync delay cannot be negative");
+        return new AsyncFileWriter(userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash,
+                compression, queueCapacity, syncDelay);
+    }
+
+    /**
+     * Serializes the document and queues it to be written to the file, blocking while the queue is full. The
+     * document's arena may be reset as soon as this returns.
+     */
+    public CompletableFuture<Long> write(Path path, ViewBuffer root) throws InterruptedException {
+        checkOpen();
+        return write(path, root.asByteBuffer(userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression));
+    }
+
+    /**
+     * Queues an already serialized document, e.g. from {@link ViewBuffer#asByteBuffer}, to be written to the file,
+     * blocking while the queue is full. The document's position is not moved, and it must not be modified until
+     * the future completes.
+     */
+    public CompletableFuture<Long> write(Path path, ByteBuffer document) throws InterruptedException {
+        var request = new Request(path, document.duplicate(), document.remaining(), new CompletableFuture<>());
+        enqueueLock.lockInterruptibly();
+        try {
+            checkOpen();
+            queue.put(request);
+        } finally {
+            enqueueLock.unlock();
+        }
+        return request.written();
+    }
+
+    private void checkOpen() {
+        if(closed) throw new IllegalStateException("Async file writer is closed");
+    }
+
+    private void run() {
+        Throwable failure = null;
+        try {
+            var running = true;
+            while(running) {
+                var request = queue.take();
+                var deadline = System.nanoTime() + syncDelayNanos;
+                while(request != CLOSE) {
+                    write(request);
+                    if(channels.size() == MAX_GROUP_SIZE) break;
+                    request = queue.poll();
+                    if(request == null) {
+                        var remaining = deadline - System.nanoTime();
+                        if(remaining <= 0 || (request = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) break;
+                    }
+                }
+                running = request != CLOSE;
+                commit();
+            }
+        } catch (InterruptedException e) {
+            // never interrupted by this class, but if it is, stop as if closed once the group is committed
+            failure = e;
+            commit();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            stop(failure);
+        }
+    }
+
+    // closes the writer and fails every document not yet completed, whether grouped or queued
+    private void stop(Throwable failure) {
+        closed = true;
+        var stopped = new IllegalStateException("Async file writer is closed", failure);
+        for(var channel : channels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // its documents fail regardless
+            }
+        }
+        for(var request : group) request.written().completeExceptionally(stopped);
+        channels.clear();
+        newEntries.clear();
+        failures.clear();
+        group.clear();
+        fail(stopped);
+        // a producer blocked on the full queue holds the lock until the drain above lets its document in
+        enqueueLock.lock();
+        try {
+            fail(stopped);
+        } finally {
+            enqueueLock.unlock();
+        }
+    }
+
+    private void fail(Exception stopped) {
+        for(var request = queue.poll(); request != null; request = queue.poll()) {
+            if(request != CLOSE) request.written().completeExceptionally(stopped);
+        }
+    }
+
+    private void write(Request request) {
+        var path = request.path();
+        group.add(request);
+        if(failures.containsKey(path)) return; // already failed, with every other document of the group for it
+        try {
+            var channel = channels.get(path);
+            if(channel == null) {
+                channel = open(path);
+                channels.put(path, channel);
+            }
+            else channel.truncate(0).position(0);
+            var src = request.document();
+            while(src.hasRemaining()) channel.write(src);
+        } catch (IOException | RuntimeException e) {
+            failures.put(path, e);
+        }
+    }
+
+    // creates each directory once, and again if it has since been removed
+    private FileChannel open(Path path) throws IOException {
+        var parent = path.toAbsolutePath().getParent();
+        if(!directories.contains(parent)) createDirectories(path, parent);
+        try {
+            return create(path, parent);
+        } catch (NoSuchFileException e) {
+            directories.remove(parent);
+            createDirectories(path, parent);
+            return create(path, parent);
+        }
+    }
+
+    private FileChannel create(Path path, Path parent) throws IOException {
+        try {
+            var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            newEntry(parent, path);
+            return channel;
+        } catch (FileAlreadyExistsException e) {
+            return FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    private void createDirectories(Path path, Path parent) throws IOException {
+        var missing = new ArrayList<Path>();
+        for(var directory = parent; directory != null && !Files.isDirectory(directory); directory = directory.getParent()) missing.add(directory);
+        Files.createDirectories(parent);
+        for(var directory : missing) newEntry(directory.getParent(), path);
+        if(directories.size() == MAX_KNOWN_DIRECTORIES) directories.clear();
+        directories.add(parent);
+    }
+
+    // the file is not durable until the directory holding a new entry on its path is forced too
+    private void newEntry(Path directory, Path path) {
+        if(FORCE_DIRECTORIES) newEntries.computeIfAbsent(directory, d -> new ArrayList<>()).add(path);
+    }
+
+    // forces and closes every file of the group, then the directories with new entries, then completes their futures
+    private void commit() {
+        for(var entry : channels.entrySet()) {
+            try (var channel = entry.getValue()) {
+                channel.force(false);
+            } catch (IOException e) {
+                failures.putIfAbsent(entry.getKey(), e);
+            }
+        }
+        for(var entry : newEntries.entrySet()) {
+            try (var directory = FileChannel.open(entry.getKey(), StandardOpenOption.READ)) {
+                directory.force(true);
+            } catch (IOException e) {
+                for(var path : entry.getValue()) failures.putIfAbsent(path, e);
+            }
+        }
+        for(var request : group) {
+            var failure = failures.get(request.path());
+            if(failure != null) request.written().completeExceptionally(failure);
+            else request.written().complete(request.length());
+        }
+        channels.clear();
+        newEntries.clear();
+        failures.clear();
+        group.clear();
+    }
+
+    /**
+     * Stops accepting documents, and waits until every document already queued has been written and forced.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            enqueueLock.lockInterruptibly();
+            try {
+                if(closed) return;
+                closed = true;
+                queue.put(CLOSE);
+            } finally {
+                enqueueLock.unlock();
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing", e);
+        }
+    }
+}
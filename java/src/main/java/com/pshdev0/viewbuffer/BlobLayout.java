@@ -0,0 +1,245 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Breadth first placement of every buffer reachable from a root, computed without copying any bytes.
+ * <p>
+ * Each level's buffers are the distinct targets of the relocations of the previous level, in order. The blob is
+ * the placed buffers back to back, with each relocation's slot pointing at its target's data start position.
+ * <p>
+ * When the root's arena deduplicates, a leaf buffer (one without slices, e.g. a string or primitive array) whose
+ * contents equal an already placed leaf is not placed again, and slices to it point at the first copy instead.
+ */
+final class BlobLayout {
+
+    final ArrayList<ViewBuffer> buffers = new ArrayList<>(); // in blob order, a buffer may be placed more than once
+    long[] positions = new long[16]; // data start position of each placed buffer
+    long size = 0;
+    int relocationCount = 0;
+    private final ArrayList<ViewBuffer> nextBuffers = new ArrayList<>();
+    private final HashMap<Contents, ViewBuffer> leaves = new HashMap<>(); // first placement of each leaf's contents
+    private final ArrayList<ViewBuffer> duplicates = new ArrayList<>(); // leaves not placed, and for each...
+    private final ArrayList<ViewBuffer> originals = new ArrayList<>(); // ...the placed leaf whose position it takes
+
+    BlobLayout(ViewBuffer root) { layout(root); }
+
+    BlobLayout() {}
+
+    /**
+     * Lays out the buffers reachable from root, reusing this layout's storage. Each buffer's last placement is kept
+     * in its {@code blobPosition}, and a per-level mark keeps every level's buffers distinct without a set.
+     */
+    BlobLayout layout(ViewBuffer root) {
+        buffers.clear();
+        size = 0;
+        relocationCount = 0;
+        leaves.clear();
+        duplicates.clear();
+        originals.clear();
+        var deduplicate = root.arena.isDeduplicating();
+        var levelStart = 0;
+        buffers.add(root);
+        while(levelStart < buffers.size()) {
+            var levelEnd = buffers.size();
+            var mark = root.arena.nextLayoutMark();
+            nextBuffers.clear();
+            for(var i = levelStart; i < levelEnd; i++) {
+                var buffer = buffers.get(i);
+                if(i == positions.length) positions = Arrays.copyOf(positions, 2 * i);
+                positions[i] = size;
+                buffer.blobPosition = size;
+                size += buffer.size;
+                relocationCount += buffer.relocations.size();
+                for(var r : buffer.relocations) {
+                    var target = r.target();
+                    if(target.layoutMark != mark) {
+                        target.layoutMark = mark;
+                        nextBuffers.add(target);
+                    }
+                }
+            }
+            for(var buffer : nextBuffers) { // addAll would copy to a temporary array
+                if(deduplicate && buffer.relocations.isEmpty()) {
+                    var original = leaves.putIfAbsent(new Contents(buffer), buffer);
+                    if(original != null) {
+                        if(original != buffer) {
+                            duplicates.add(buffer);
+                            originals.add(original);
+                        }
+                        continue;
+                    }
+                }
+                buffers.add(buffer);
+            }
+            levelStart = levelEnd;
+        }
+        for(var i = 0; i < duplicates.size(); i++) duplicates.get(i).blobPosition = originals.get(i).blobPosition;
+        return this;
+    }
+
+    // a buffer's bytes as a map key
+    private record Contents(ViewBuffer buffer) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Contents other
+                    && Arrays.equals(buffer.bytes, 0, buffer.size, other.buffer.bytes, 0, other.buffer.size);
+        }
+
+        @Override
+        public int hashCode() {
+            var hash = 1;
+            for(var i = 0; i < buffer.size; i++) hash = 31 * hash + buffer.bytes[i];
+            return hash;
+        }
+    }
+
+    /**
+     * The blob size as an int, for blobs which must fit a single array or byte buffer.
+     */
+    int intSize() {
+        if(size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Blob of " + size + " bytes is too large for a single buffer, stream it to a channel instead");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Blob-relative positions of every slice slot, in ascending order.
+     */
+    int[] relocationOffsets() {
+        intSize();
+        var offsets = new int[relocationCount];
+        var c1 = 0;
+        for(var i = 0; i < buffers.size(); i++) {
+            for(var r : buffers.get(i).relocations) offsets[c1++] = (int) positions[i] + r.position();
+        }
+        return offsets;
+    }
+
+    /**
+     * Writes the relocation offsets (see {@link #relocationOffsets()}) into the buffer's bytes from the given index,
+     * 8 bytes each when wide, otherwise 4.
+     */
+    void writeRelocationOffsets(ViewBuffer dst, int index, boolean wide) {
+        for(var i = 0; i < buffers.size(); i++) {
+            for(var r : buffers.get(i).relocations) {
+                if(wide) setInt64(dst.bytes, index, positions[i] + r.position());
+                else setInt32(dst.bytes, index, (int) positions[i] + r.position());
+                index += wide ? 8 : 4;
+            }
+        }
+    }
+
+    /**
+     * The number of bytes {@link #writeCompactRelocationOffsets} writes.
+     */
+    int compactRelocationOffsetsSize() {
+        var size = 0;
+        var previous = 0L;
+        for(var i = 0; i < buffers.size(); i++) {
+            for(var r : buffers.get(i).relocations) {
+                var offset = positions[i] + r.position();
+                size += varintSize(offset - previous);
+                previous = offset;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the relocation offsets into the buffer's bytes from the given index as the unsigned LEB128 varint
+     * differences between successive offsets, the first from 0. The offsets ascend, so no difference is negative.
+     *
+     * @return the index after the last byte written
+     */
+    int writeCompactRelocationOffsets(ViewBuffer dst, int index) {
+        var previous = 0L;
+        for(var i = 0; i < buffers.size(); i++) {
+            for(var r : buffers.get(i).relocations) {
+                var offset = positions[i] + r.position();
+                for(var delta = offset - previous; ; delta >>>= 7) {
+                    if(delta < 0x80) {
+                        dst.bytes[index++] = (byte) delta;
+                        break;
+                    }
+                    dst.bytes[index++] = (byte) (delta | 0x80);
+                }
+                previous = offset;
+            }
+        }
+        return index;
+    }
+
+    private static int varintSize(long value) { return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1; }
+
+    /**
+     * Copies the linked blob into the given empty buffer.
+     */
+    void copyTo(ViewBuffer blob) {
+        blob.grow(intSize());
+        for(var i = 0; i < buffers.size(); i++) {
+            var buffer = buffers.get(i);
+            var position = (int) positions[i];
+            System.arraycopy(buffer.bytes, 0, blob.bytes, position, buffer.size);
+            for(var r : buffer.relocations) writeSlice(blob.bytes, position + r.position(), r.target());
+        }
+    }
+
+    /**
+     * Streams the linked blob without materialising it, patching each slice slot on the way out.
+     */
+    void writeTo(OutputStream out) throws IOException {
+        var slot = new byte[16];
+        for(var buffer : buffers) {
+            var index = 0;
+            for(var r : buffer.relocations) {
+                out.write(buffer.bytes, index, r.position() - index);
+                writeSlice(slot, 0, r.target());
+                out.write(slot);
+                index = r.position() + slot.length;
+            }
+            out.write(buffer.bytes, index, buffer.size - index);
+        }
+    }
+
+    /**
+     * Writes the linked blob at the buffer's position, patching each slice slot on the way.
+     */
+    void writeTo(ByteBuffer dst) {
+        var order = dst.order();
+        dst.order(ByteOrder.LITTLE_ENDIAN);
+        for(var buffer : buffers) {
+            var index = 0;
+            for(var r : buffer.relocations) {
+                dst.put(buffer.bytes, index, r.position() - index);
+                var target = r.target();
+                dst.putLong(target.blobPosition).putLong(target.arrayLength);
+                index = r.position() + 16;
+            }
+            dst.put(buffer.bytes, index, buffer.size - index);
+        }
+        dst.order(order);
+    }
+
+    private void writeSlice(byte[] dst, int index, ViewBuffer target) {
+        setInt64(dst, index, target.blobPosition); // write the slice offset
+        setInt64(dst, index + 8, target.arrayLength); // write the slice length, at most 2,147,483,647 elements
+    }
+
+    static void setInt32(byte[] dst, int index, int value) {
+        dst[index] = (byte) value;
+        dst[index + 1] = (byte) (value >> 8);
+        dst[index + 2] = (byte) (value >> 16);
+        dst[index + 3] = (byte) (value >> 24);
+    }
+
+    static void setInt64(byte[] dst, int index, long value) {
+        setInt32(dst, index, (int) value);
+        setInt32(dst, index + 4, (int) (value >>> 32));
+    }
+}
@@ -0,0 +1,116 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits everything written into fixed-size chunks and deflates them in parallel on a {@link ForkJoinPool}, writing
+ * the compressed chunks to the underlying stream in order. At most a few chunks per worker are in flight at once, so
+ * memory stays bounded regardless of blob size.
+ * <p>
+ * A stream can be {@link #reset} for the next blob once finished, keeping its chunk arrays, so an arena reuses one
+ * for all of its chunked writes.
+ */
+final class ChunkedDeflaterOutputStream extends OutputStream {
+
+    private OutputStream out;
+    private Compression compression;
+    private final ForkJoinPool pool;
+    private final int maxPending;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> spareChunks = new ArrayDeque<>(); // chunk arrays whose compression has finished
+    final ArrayList<Integer> chunkSizes = new ArrayList<>(); // compressed size of each chunk written so far
+
+    private byte[] chunk;
+    private int chunkLength = 0;
+
+    private record Pending(ForkJoinTask<byte[]> task, byte[] chunk) {}
+
+    ChunkedDeflaterOutputStream(OutputStream out, Compression compression) {
+        this(out, compression, ForkJoinPool.commonPool());
+    }
+
+    ChunkedDeflaterOutputStream(OutputStream out, Compression compression, ForkJoinPool pool) {
+        if(!compression.isChunked()) throw new IllegalArgumentException("Compression is not chunked");
+        this.out = out;
+        this.compression = compression;
+        this.pool = pool;
+        maxPending = 2 * pool.getParallelism();
+        chunk = new byte[compression.chunkSize()];
+    }
+
+    /**
+     * Readies the stream for another blob, keeping the chunk arrays unless the chunk size changes.
+     */
+    void reset(OutputStream out, Compression compression) {
+        if(!compression.isChunked()) throw new IllegalArgumentException("Compression is not chunked");
+        while(!pending.isEmpty()) { // left by a failed write
+            var next = pending.poll();
+            next.task().quietlyJoin();
+            spareChunks.add(next.chunk());
+        }
+        if(compression.chunkSize() != chunk.length) {
+            spareChunks.clear();
+            chunk = new byte[compression.chunkSize()];
+        }
+        this.out = out;
+        this.compression = compression;
+        chunkSizes.clear();
+        chunkLength = 0;
+    }
+
+    static int chunkCount(long blobSize, int chunkSize) { return Math.toIntExact((blobSize + chunkSize - 1) / chunkSize); }
+
+    @Override
+    public void write(int b) throws IOException {
+        chunk[chunkLength++] = (byte) b;
+        if(chunkLength == chunk.length) submit();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0) {
+            var count = Math.min(len, chunk.length - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, count);
+            chunkLength += count;
+            off += count;
+            len -= count;
+            if(chunkLength == chunk.length) submit();
+        }
+    }
+
+    private void submit() throws IOException {
+        var data = chunk;
+        var length = chunkLength;
+        pending.add(new Pending(pool.submit(() -> compression.deflate(data, 0, length)), data));
+        chunk = spareChunks.isEmpty() ? new byte[chunk.length] : spareChunks.poll();
+        chunkLength = 0;
+        while(pending.size() > maxPending) drain();
+    }
+
+    private void drain() throws IOException {
+        var next = pending.poll();
+        var compressed = next.task().join();
+        spareChunks.add(next.chunk());
+        out.write(compressed);
+        chunkSizes.add(compressed.length);
+    }
+
+    /**
+     * Compresses any partial last chunk and writes every outstanding chunk, without closing the underlying stream.
+     */
+    void finish() throws IOException {
+        if(chunkLength > 0) submit();
+        while(!pending.isEmpty()) drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+}
@@ -0,0 +1,111 @@
+package com.pshdev0.viewbuffer;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Blob compression settings.
+ * <p>
+ * A chunk size of 0 deflates the blob as a single zlib stream (header flag bit 0). A positive chunk size splits the
+ * blob into chunks of that many bytes which are deflated independently and in parallel, with a chunk table at the
+ * end of the header (header flag bits 0 and 4).
+ *
+ * @param level    a {@link Deflater} compression level
+ * @param strategy a {@link Deflater} strategy
+ * @param chunkSize uncompressed bytes per chunk, or 0 for a single stream
+ */
+public record Compression(int level, int strategy, int chunkSize) {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    public static final Compression DEFAULT = new Compression(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+    // per-thread deflaters, one per level and strategy so a reset deflater behaves exactly like a new one
+    private static final ThreadLocal<Deflater[]> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater[11 * 3]);
+    // shared rather than per thread, since a partially inflated blob holds on to its inflater between reads
+    private static final ArrayBlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(64);
+    // grown to fit a chunk's deflated bytes, but dropped after a use which grew it past MAX_SCRATCH_SIZE
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[ViewBuffer.STREAM_BUFFER_SIZE]);
+    private static final int MAX_SCRATCH_SIZE = 2 * DEFAULT_CHUNK_SIZE;
+
+    public Compression {
+        if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Unsupported compression level: " + level);
+        }
+        if(strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("Unsupported compression strategy: " + strategy);
+        }
+        if(chunkSize < 0) throw new IllegalArgumentException("Chunk size cannot be negative");
+    }
+
+    public static Compression chunked() { return chunked(DEFAULT_CHUNK_SIZE); }
+    public static Compression chunked(int chunkSize) { return DEFAULT.withChunkSize(chunkSize); }
+
+    public Compression withLevel(int level) { return new Compression(level, strategy, chunkSize); }
+    public Compression withStrategy(int strategy) { return new Compression(level, strategy, chunkSize); }
+    public Compression withChunkSize(int chunkSize) { return new Compression(level, strategy, chunkSize); }
+
+    public boolean isChunked() { return chunkSize > 0; }
+
+    int flags() {
+        return ViewBuffer.HEADER_FLAG_COMPRESS_DATA | (isChunked() ? ViewBuffer.HEADER_FLAG_CHUNKED_COMPRESSION : 0);
+    }
+
+    Deflater newDeflater() {
+        var deflater = new Deflater(level);
+        deflater.setStrategy(strategy);
+        return deflater;
+    }
+
+    /**
+     * The calling thread's deflater for these settings, reset and ready for a new stream. It is reused by the next
+     * call on the same thread, so it must not be ended or held on to.
+     */
+    Deflater deflater() {
+        var deflaters = DEFLATERS.get();
+        var index = (level + 1) * 3 + strategy; // both validated on construction
+        var deflater = deflaters[index];
+        if(deflater == null) deflaters[index] = deflater = newDeflater();
+        else deflater.reset();
+        return deflater;
+    }
+
+    /**
+     * A pooled inflater, ready for a new stream. Hand it back with {@link #release(Inflater)} when done.
+     */
+    static Inflater inflater() {
+        var inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    static void release(Inflater inflater) {
+        inflater.reset();
+        if(!INFLATERS.offer(inflater)) inflater.end(); // the pool is full
+    }
+
+    /**
+     * Deflates the given bytes as one complete zlib stream.
+     */
+    byte[] deflate(byte[] data, int offset, int length) {
+        var deflater = deflater();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        var out = SCRATCH.get();
+        var count = 0;
+        while (!deflater.finished()) {
+            if(count == out.length) SCRATCH.set(out = Arrays.copyOf(out, out.length * 2));
+            count += deflater.deflate(out, count, out.length - count);
+        }
+        if(out.length > MAX_SCRATCH_SIZE) SCRATCH.remove();
+        return Arrays.copyOf(out, count);
+    }
+
+    /**
+     * An upper bound on the deflated size of {@code length} bytes, as zlib's deflateBound.
+     */
+    static long deflateBound(long length) {
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + 6;
+    }
+}
@@ -0,0 +1,154 @@
+package com.pshdev0.viewbuffer;
+
+import javax.lang.model.SourceVersion;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.pshdev0.viewbuffer.ViewBuffer.*;
+
+/**
+ * Generates Java flyweight classes from a struct encoding, the Java counterpart of
+ * {@link ViewBuffer#generateStructs(String)}.
+ * <p>
+ * Each struct becomes a nested class whose accessors read their field at a constant offset from the struct's
+ * position in a little-endian blob, such as {@link ViewBufferReader#blob()}. A flyweight is positioned with
+ * {@code wrap} and can be repositioned over any number of structs, e.g. every element of an array, so reading
+ * allocates nothing. Slices of structs are read into a cursor passed by the caller, and strings into a
+ * {@link StringView} owned by the flyweight.
+ */
+final class FlyweightGenerator {
+
+    private static final String INDENT = "    ";
+    // methods every flyweight already has, which an accessor must not be named after
+    private static final Set<String> RESERVED = Set.of("wrap", "getClass", "hashCode", "toString", "notify", "notifyAll", "wait", "clone", "finalize");
+    // classes the generated code refers to by simple name, which a generated class must not shadow
+    private static final Set<String> IMPORTED = Set.of("StringView", "ByteBuffer", "Objects");
+
+    private final StringBuilder code = new StringBuilder();
+
+    private FlyweightGenerator() {}
+
+    static String generate(String structEncoding, String packageName, String className) {
+        var layouts = ViewBufferReader.parseStructEncoding(structEncoding);
+        if(layouts.containsKey(className)) throw new IllegalArgumentException("Class name clashes with a struct: " + className);
+        className(className, "Class");
+        for(var name : layouts.keySet()) className(name, "Struct");
+        var generator = new FlyweightGenerator();
+        generator.file(structEncoding.trim(), packageName, className, layouts);
+        return generator.code.toString();
+    }
+
+    private void file(String structEncoding, String packageName, String className,
+                      Map<String, ViewBufferReader.StructLayout> layouts) {
+        if(packageName != null && !packageName.isEmpty()) line(0, "package " + packageName + ";").line(0, "");
+        line(0, "import com.pshdev0.viewbuffer.StringView;").line(0, "");
+        line(0, "import java.nio.ByteBuffer;").line(0, "import java.util.Objects;").line(0, "");
+        line(0, "/**").line(0, " * Flyweights generated from the struct encoding:").line(0, " * " + structEncoding).line(0, " */");
+        line(0, "public final class " + className + " {").line(0, "");
+        line(1, "private " + className + "() {}");
+        for(var layout : layouts.values()) struct(layout, layouts);
+        line(0, "}");
+    }
+
+    private void struct(ViewBufferReader.StructLayout layout, Map<String, ViewBufferReader.StructLayout> layouts) {
+        var name = layout.name();
+        line(0, "");
+        line(1, "public static final class " + name + " {");
+        line(2, "public static final int SIZE = " + layout.size() + ";").line(0, "");
+        line(2, "private ByteBuffer buffer;");
+        line(2, "private int base;");
+        for(var field : layout.fields()) {
+            if(field.slice() && field.type().equals(ENCODE_STRING)) {
+                line(2, "private final StringView " + field.name() + "View = new StringView();");
+            }
+        }
+        line(0, "");
+        line(2, "/**").line(2, " * Positions this flyweight over the struct at the given offset within a little-endian blob.").line(2, " */");
+        line(2, "public " + name + " wrap(ByteBuffer buffer, int offset) {");
+        line(3, "this.buffer = buffer;").line(3, "base = offset;").line(3, "return this;").line(2, "}");
+        var accessors = new HashSet<>(RESERVED);
+        for(var field : layout.fields()) {
+            line(0, "");
+            var accessor = accessor(layout, field.name(), accessors);
+            var at = "base + " + field.offset();
+            if(field.inSituStruct()) {
+                line(2, "public " + field.type() + " " + accessor + "(" + field.type() + " cursor) { return cursor.wrap(buffer, " + at + "); }");
+            }
+            else if(!field.slice()) {
+                var type = javaType(field.type());
+                line(2, "public " + type + " " + accessor + "() { return " + read(type, at) + "; }");
+            }
+            else {
+                var length = accessor(layout, field.name() + "Length", accessors);
+                var start = "(int) buffer.getLong(" + at + ")";
+                line(2, "public int " + length + "() { return (int) buffer.getLong(base + " + (field.offset() + 8) + "); }");
+                var type = field.type();
+                if(type.equals(ENCODE_STRING)) {
+                    line(2, "public StringView " + accessor + "() { return " + field.name() + "View.wrap(buffer, " + start + ", " + length + "()); }");
+                }
+                else if(layouts.containsKey(type)) {
+                    line(2, "public " + type + " " + accessor + "(" + type + " cursor, int i) {");
+                    line(3, "Objects.checkIndex(i, " + length + "());");
+                    line(3, "return cursor.wrap(buffer, " + start + " + i * " + type + ".SIZE);").line(2, "}");
+                }
+                else if(ViewBufferReader.primitiveSize(type) > 0) {
+                    var elementType = javaType(type);
+                    line(2, "public " + elementType + " " + accessor + "(int i) {");
+                    line(3, "Objects.checkIndex(i, " + length + "());");
+                    line(3, "return " + read(elementType, start + " + i * " + ViewBufferReader.primitiveSize(type)) + ";").line(2, "}");
+                }
+                // a slice of an unknown type only has its length
+            }
+        }
+        line(1, "}");
+    }
+
+    // the Java type of an encoded primitive, or of a generated D type name, see ViewBufferReader.primitiveSize
+    private static String javaType(String type) {
+        return switch(type) {
+            case ENCODE_INT8, ENCODE_STRING, "ubyte", "char" -> "byte";
+            case ENCODE_BOOL, "bool" -> "boolean";
+            case ENCODE_INT16, "short" -> "short";
+            case ENCODE_INT32, "int" -> "int";
+            case ENCODE_INT64, ENCODE_BYTE_POINTER_32, "long" -> "long";
+            case ENCODE_FLOAT32, "float" -> "float";
+            case ENCODE_FLOAT64, "double" -> "double";
+            default -> throw new IllegalStateException("Unknown type: " + type);
+        };
+    }
+
+    private static String read(String javaType, String index) {
+        return switch(javaType) {
+            case "byte" -> "buffer.get(" + index + ")";
+            case "boolean" -> "buffer.get(" + index + ") != 0";
+            default -> "buffer.get" + Character.toUpperCase(javaType.charAt(0)) + javaType.substring(1) + "(" + index + ")";
+        };
+    }
+
+    // a slice's length accessor, xLength(), would otherwise silently clash with a field named xLength
+    private static String accessor(ViewBufferReader.StructLayout layout, String name, Set<String> accessors) {
+        var accessor = identifier(name);
+        if(!accessors.add(accessor)) {
+            throw new IllegalArgumentException("Accessor " + accessor + "() of struct " + layout.name() + " clashes with another of its accessors or methods");
+        }
+        return accessor;
+    }
+
+    // unlike a field, a class cannot simply be renamed, as the caller's code refers to it by its struct's name
+    private static void className(String name, String what) {
+        if(!SourceVersion.isIdentifier(name) || SourceVersion.isKeyword(name)) {
+            throw new IllegalArgumentException(what + " name is not a valid Java class name: " + name);
+        }
+        if(IMPORTED.contains(name)) throw new IllegalArgumentException(what + " name clashes with a class the generated code uses: " + name);
+    }
+
+    // field names which are Java keywords get a trailing underscore
+    private static String identifier(String name) { return SourceVersion.isKeyword(name) ? name + "_" : name; }
+
+    private FlyweightGenerator line(int indent, String text) {
+        if(!text.isEmpty()) code.append(INDENT.repeat(indent)).append(text);
+        code.append('\n');
+        return this;
+    }
+}
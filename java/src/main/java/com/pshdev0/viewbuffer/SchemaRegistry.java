@@ -0,0 +1,145 @@
+package com.pshdev0.viewbuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Interns every distinct struct encoding once, together with everything derived from it.
+ * <p>
+ * Writing many documents of the same schema would otherwise re-hash, re-encode and re-parse the same encoding for
+ * every document. A {@link Schema} caches the encoding's 16-byte hash and its ready-made header bytes, so building
+ * a header is a copy, while the generated D structs and the reader's struct layouts are only built on first use.
+ * The registry is shared by every thread and arena. It holds the {@link #MAX_SCHEMAS} most recently used schemas,
+ * so a reader opening documents of ever new encodings, e.g. from untrusted files, cannot grow it without bound; a
+ * schema evicted and then used again is simply registered afresh.
+ */
+public final class SchemaRegistry {
+
+    public static final int MAX_SCHEMAS = 1024;
+
+    // both guarded by the class lock, as an access-ordered map is modified by every get
+    private static final Map<String, Schema> BY_ENCODING = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Schema> eldest) {
+            if(size() <= MAX_SCHEMAS) return false;
+            BY_HASH.remove(ByteBuffer.wrap(eldest.getValue().hash), eldest.getValue());
+            return true;
+        }
+    };
+    private static final Map<ByteBuffer, Schema> BY_HASH = new HashMap<>();
+
+    private SchemaRegistry() {}
+
+    /**
+     * The schema for a struct encoding (with or without its trailing padding), registering it on first use.
+     */
+    public static Schema intern(String structEncoding) {
+        var encoding = structEncoding.trim();
+        synchronized(SchemaRegistry.class) {
+            var schema = BY_ENCODING.get(encoding);
+            if(schema != null) return schema;
+        }
+        var schema = new Schema(encoding); // hashed outside the lock
+        synchronized(SchemaRegistry.class) {
+            var registered = BY_ENCODING.putIfAbsent(encoding, schema);
+            if(registered != null) return registered;
+            BY_HASH.putIfAbsent(ByteBuffer.wrap(schema.hash), schema);
+            return schema;
+        }
+    }
+
+    /**
+     * The registered schema with the given 16-byte encoding hash, or null if no such schema has been seen (or it
+     * has since been evicted).
+     */
+    public static synchronized Schema lookup(byte[] hash) {
+        var schema = BY_HASH.get(ByteBuffer.wrap(hash));
+        if(schema != null) BY_ENCODING.get(schema.encoding); // counts as a use
+        return schema;
+    }
+
+    public static synchronized int size() { return BY_ENCODING.size(); }
+
+    public static synchronized void clear() {
+        BY_ENCODING.clear();
+        BY_HASH.clear();
+    }
+
+    public static final class Schema {
+        private final String encoding; // without padding
+        private final byte[] hash;
+        private final byte[] encodingSection; // 2-byte length + encoding padded so the section ends 4-byte aligned
+        private volatile String hashHex;
+        private volatile String generatedStructs;
+        private volatile Map<String, ViewBufferReader.StructLayout> layouts;
+
+        private Schema(String encoding) {
+            this.encoding = encoding;
+            var encodingBytes = encoding.getBytes(StandardCharsets.UTF_8);
+
+            // the length is 2 bytes and we are 4-byte aligned at that point, so pad until length % 4 == 2
+            var length = encodingBytes.length;
+            while(length % 4 != 2) length++;
+            encodingSection = new byte[2 + length];
+            encodingSection[0] = (byte) length;
+            encodingSection[1] = (byte) (length >> 8);
+            System.arraycopy(encodingBytes, 0, encodingSection, 2, encodingBytes.length);
+            Arrays.fill(encodingSection, 2 + encodingBytes.length, encodingSection.length, (byte) ' ');
+
+            // the hash covers the padded encoding as written
+            var digest = sha256();
+            digest.update(encodingSection, 2, length);
+            hash = Arrays.copyOf(digest.digest(), 16);
+        }
+
+        public String encoding() { return encoding; }
+        public byte[] hash() { return hash.clone(); }
+
+        public String hashHex() {
+            var hex = hashHex;
+            if(hex == null) hashHex = hex = HexFormat.of().formatHex(hash);
+            return hex;
+        }
+
+        /**
+         * The D struct definitions for this schema, generated on first call.
+         */
+        public String generateStructs() {
+            var code = generatedStructs;
+            if(code == null) generatedStructs = code = encoding.isEmpty() ? "" : ViewBuffer.structsOf(encoding);
+            return code;
+        }
+
+        /**
+         * Java flyweight classes for this schema, see {@link ViewBuffer#generateJava}.
+         */
+        public String generateJava(String packageName, String className) {
+            return ViewBuffer.generateJava(encoding, packageName, className);
+        }
+
+        Map<String, ViewBufferReader.StructLayout> layouts() {
+            var parsed = layouts;
+            if(parsed == null) layouts = parsed = ViewBufferReader.parseStructEncoding(encoding);
+            return parsed;
+        }
+
+        // header bytes, shared - never modify
+        byte[] hashBytes() { return hash; }
+        byte[] encodingSection() { return encodingSection; }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Hashing failed", e); // every JVM provides SHA-256
+            }
+        }
+    }
+}
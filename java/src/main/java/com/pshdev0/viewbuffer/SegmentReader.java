@@ -0,0 +1,152 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+import static com.pshdev0.viewbuffer.SegmentWriter.*;
+import static com.pshdev0.viewbuffer.ViewBuffer.*;
+
+/**
+ * Random access to the documents of a segment file written by {@link SegmentWriter}.
+ * <p>
+ * The segment is memory-mapped and its index is read in place, so fetching a document by sequence number is O(1)
+ * and returns a {@link ViewBufferReader} over the mapped bytes without copying. Segments larger than a single
+ * mapping allows are mapped one document at a time. A segment without an index (its writer was never closed) is
+ * recovered by walking the document headers, see {@link #isRecovered()}.
+ * <p>
+ * A reader is immutable once opened, so it may be shared by threads reading documents concurrently, but it is not
+ * thread-safe to close: it must only be closed once no thread reads from it any more.
+ */
+public final class SegmentReader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer mapped; // the whole segment, or null if it is too large for one mapping
+    private final ByteBuffer index; // id, offset, length per document
+    private final int documentCount;
+    private final boolean recovered;
+    private final HashMap<Long, Integer> sequenceById; // null when every id is its sequence number
+
+    private SegmentReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        var size = channel.size();
+        mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN) : null;
+
+        var header = read(0, SEGMENT_HEADER_SIZE);
+        if(header.getInt(0) != SEGMENT_MAGIC) throw new IllegalStateException("Incorrect segment format");
+        if(header.getInt(4) != SEGMENT_VERSION) throw new IllegalStateException("Unknown segment version: " + header.getInt(4));
+
+        var trailer = size >= SEGMENT_HEADER_SIZE + TRAILER_SIZE ? read(size - TRAILER_SIZE, TRAILER_SIZE) : null;
+        if(trailer != null && trailer.getInt(20) == SEGMENT_MAGIC) {
+            if(trailer.getInt(16) != SEGMENT_VERSION) throw new IllegalStateException("Unknown segment version: " + trailer.getInt(16));
+            var indexOffset = trailer.getLong(0);
+            documentCount = trailer.getInt(8);
+            var indexLength = (long) INDEX_ENTRY_SIZE * documentCount;
+            if(documentCount < 0 || indexOffset < SEGMENT_HEADER_SIZE || indexOffset + indexLength != size - TRAILER_SIZE) {
+                throw new IllegalStateException("Segment index does not match the segment size");
+            }
+            if(indexLength > Integer.MAX_VALUE) throw new IllegalStateException("Segment index too large to map: " + documentCount + " documents");
+            index = read(indexOffset, (int) indexLength);
+            recovered = false;
+        }
+        else {
+            index = scan(size);
+            documentCount = index.capacity() / INDEX_ENTRY_SIZE;
+            recovered = true;
+        }
+        sequenceById = mapIds();
+    }
+
+    public static SegmentReader open(Path path) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new SegmentReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int documentCount() { return documentCount; }
+
+    /**
+     * True if the segment had no index and its documents were found by walking their headers. Every complete
+     * document is recovered with its id; a document whose write was cut short is dropped, along with any after it.
+     */
+    public boolean isRecovered() { return recovered; }
+
+    public long documentId(int sequence) { return index.getLong(entry(sequence)); }
+    public long documentOffset(int sequence) { return index.getLong(entry(sequence) + 8); }
+    public long documentLength(int sequence) { return index.getLong(entry(sequence) + 16); }
+
+    public ViewBufferReader document(int sequence) throws IOException { return ViewBufferReader.of(documentBytes(sequence)); }
+
+    /**
+     * The serialized document, as a read-only view over the mapped segment.
+     */
+    public ByteBuffer documentBytes(int sequence) throws IOException {
+        var offset = documentOffset(sequence);
+        var length = documentLength(sequence);
+        if(length > Integer.MAX_VALUE) throw new IllegalStateException("Document too large to map: " + length);
+        return read(offset, (int) length);
+    }
+
+    /**
+     * The sequence number of the document with the given id, or -1. O(1) when ids are sequence numbers (the default).
+     */
+    public int find(long documentId) {
+        if(sequenceById != null) return sequenceById.getOrDefault(documentId, -1);
+        return documentId >= 0 && documentId < documentCount ? (int) documentId : -1;
+    }
+
+    // built up front so the reader stays immutable, and skipped for the usual segment of sequence numbers
+    private HashMap<Long, Integer> mapIds() {
+        var sequence = 0;
+        while(sequence < documentCount && documentId(sequence) == sequence) sequence++;
+        if(sequence == documentCount) return null;
+        var map = new HashMap<Long, Integer>();
+        for(sequence = documentCount - 1; sequence >= 0; sequence--) map.put(documentId(sequence), sequence); // first wins
+        return map;
+    }
+
+    private int entry(int sequence) {
+        if(sequence < 0 || sequence >= documentCount) throw new IndexOutOfBoundsException("Document " + sequence + " of " + documentCount);
+        return sequence * INDEX_ENTRY_SIZE;
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if(mapped != null) return mapped.slice((int) offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // rebuilds the index of an unclosed segment from the document headers, stopping at the first incomplete one
+    private ByteBuffer scan(long size) throws IOException {
+        var entries = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 64).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = SEGMENT_HEADER_SIZE;
+        while(offset + DOCUMENT_ID_SIZE + HEADER_FIXED_SIZE <= size) {
+            var id = read(offset, DOCUMENT_ID_SIZE).getLong(0);
+            offset += DOCUMENT_ID_SIZE;
+            var header = read(offset, HEADER_FIXED_SIZE);
+            if(header.getInt(0) != HEADER_VBUF_MAGIC) break;
+            var compressedBlobSize = header.get(4) == HEADER_FATBUFFER_WIDE_VERSION
+                    ? header.getLong(HEADER_COMPRESSED_BLOB_SIZE_INDEX)
+                    : header.getInt(HEADER_COMPRESSED_BLOB_SIZE_INDEX) & 0xFFFFFFFFL;
+            var length = (header.getInt(8) & 0xFFFFFFFFL) + compressedBlobSize;
+            if(offset + length > size) break;
+            if(!entries.hasRemaining()) {
+                entries = ByteBuffer.allocate(entries.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN).put(entries.flip());
+            }
+            entries.putLong(id).putLong(offset).putLong(length);
+            offset += length + (-length & (DOCUMENT_ALIGNMENT - 1));
+        }
+        return entries.flip().slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+}
@@ -0,0 +1,149 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Appends many ViewBuffer documents to one segment file, followed by an index for random access with
+ * {@link SegmentReader}.
+ * <p>
+ * Segment layout (little-endian):
+ * <pre>
+ * "VSEG" magic (4), segment version (4)
+ * documents, each its id (8) followed by a complete ViewBuffer (header + blob), starting 8-byte aligned
+ * index: per document, id (8), offset (8), length (8)
+ * trailer: index offset (8), document count (4), reserved (4), segment version (4), "VSEG" magic (4)
+ * </pre>
+ * The index and trailer are written by {@link #close()}. A segment that was never closed still holds valid
+ * documents back to back, and {@link SegmentReader} recovers them, with their ids, by walking their headers.
+ * <p>
+ * A writer is not thread-safe, so threads appending to one segment concurrently must synchronize on it.
+ */
+public final class SegmentWriter implements Closeable {
+
+    public static final int SEGMENT_MAGIC = 0x47455356; // "VSEG"
+    public static final int SEGMENT_VERSION = 1;
+
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int DOCUMENT_ID_SIZE = 8;
+    static final int INDEX_ENTRY_SIZE = 24;
+    static final int TRAILER_SIZE = 24;
+    static final int DOCUMENT_ALIGNMENT = 8;
+
+    private static final byte[] PADDING = new byte[DOCUMENT_ALIGNMENT];
+
+    private final FileChannel channel;
+    private final short userDefinedVersion;
+    private final boolean includeStructEncoding;
+    private final boolean includeStructEncodingVersionHash;
+    private final Compression compression;
+    private final ByteBuffer documentId = ByteBuffer.allocate(DOCUMENT_ID_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long[] index = new long[3 * 64]; // id, offset, length per document
+    private int documentCount = 0;
+    private boolean closed = false;
+
+    private SegmentWriter(FileChannel channel, short userDefinedVersion, boolean includeStructEncoding,
+                          boolean includeStructEncodingVersionHash, Compression compression) {
+        this.channel = channel;
+        this.userDefinedVersion = userDefinedVersion;
+        this.includeStructEncoding = includeStructEncoding;
+        this.includeStructEncodingVersionHash = includeStructEncodingVersionHash;
+        this.compression = compression;
+    }
+
+    /**
+     * Creates (or truncates) a segment file. Documents appended as {@link ViewBuffer}s are written with the given
+     * settings, as with {@link ViewBuffer#writeBuffer}.
+     *
+     * @param compression the blob compression settings, or null to leave blobs uncompressed
+     */
+    public static SegmentWriter create(Path path, short userDefinedVersion, boolean includeStructEncoding,
+                                       boolean includeStructEncodingVersionHash, Compression compression) throws IOException {
+        if(path.getParent() != null) Files.createDirectories(path.getParent());
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            var header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).flip();
+            while(header.hasRemaining()) channel.write(header);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new SegmentWriter(channel, userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression);
+    }
+
+    /**
+     * Appends a document with its sequence number as its id, and returns the sequence number.
+     */
+    public int append(ViewBuffer root) throws IOException { return append(documentCount, root); }
+
+    public int append(long documentId, ViewBuffer root) throws IOException {
+        checkOpen();
+        writeId(documentId);
+        var offset = channel.position();
+        var length = root.writeTo(channel, userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression);
+        return addEntry(documentId, offset, length);
+    }
+
+    /**
+     * Appends an already serialized document, e.g. from {@link ViewBuffer#asByteBuffer}, without moving its position.
+     */
+    public int append(long documentId, ByteBuffer document) throws IOException {
+        checkOpen();
+        writeId(documentId);
+        var offset = channel.position();
+        var src = document.duplicate();
+        while(src.hasRemaining()) channel.write(src);
+        return addEntry(documentId, offset, document.remaining());
+    }
+
+    public int documentCount() { return documentCount; }
+
+    // the id is written ahead of the document too, so a segment that was never closed can be recovered with its ids
+    private void writeId(long id) throws IOException {
+        documentId.clear().putLong(0, id);
+        while(documentId.hasRemaining()) channel.write(documentId);
+    }
+
+    private int addEntry(long documentId, long offset, long length) throws IOException {
+        var padding = (int) (-(offset + length) & (DOCUMENT_ALIGNMENT - 1));
+        if(padding > 0) {
+            var src = ByteBuffer.wrap(PADDING, 0, padding);
+            while(src.hasRemaining()) channel.write(src);
+        }
+        if(3 * documentCount == index.length) index = Arrays.copyOf(index, index.length * 2);
+        index[3 * documentCount] = documentId;
+        index[3 * documentCount + 1] = offset;
+        index[3 * documentCount + 2] = length;
+        return documentCount++;
+    }
+
+    private void checkOpen() {
+        if(closed) throw new IllegalStateException("Segment writer is closed");
+    }
+
+    /**
+     * Writes the index and trailer and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) return;
+        closed = true;
+        try (channel) {
+            var indexOffset = channel.position();
+            var footer = ByteBuffer.allocate(INDEX_ENTRY_SIZE * documentCount + TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            footer.asLongBuffer().put(index, 0, 3 * documentCount);
+            footer.position(INDEX_ENTRY_SIZE * documentCount);
+            footer.putLong(indexOffset).putInt(documentCount).putInt(0).putInt(SEGMENT_VERSION).putInt(SEGMENT_MAGIC).flip();
+            while(footer.hasRemaining()) channel.write(footer);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.pshdev0.viewbuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A reusable view over a string within a blob, returned by the accessors of generated flyweights (see
+ * {@link ViewBuffer#generateJava}) so that reading a string field allocates nothing.
+ * <p>
+ * Each char is one byte of the string, which is exact for ASCII, so {@link #length()} and {@link #charAt(int)}
+ * count bytes, not chars, for any other text. {@link #toString()} decodes the bytes as UTF-8.
+ * A view is only valid until it is wrapped again, which happens on the next read of the same field.
+ */
+public final class StringView implements CharSequence {
+
+    private ByteBuffer data;
+    private int offset;
+    private int length;
+
+    public StringView wrap(ByteBuffer data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * The length in bytes, which is the number of chars only for ASCII.
+     */
+    @Override public int length() { return length; }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, length);
+        return (char) (data.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        return new StringView().wrap(data, offset + start, end - start);
+    }
+
+    /**
+     * Whether the chars equal those of the given sequence, compared without decoding.
+     */
+    public boolean contentEquals(CharSequence other) {
+        if(other.length() != length) return false;
+        for(var i = 0; i < length; i++) {
+            if((char) (data.get(offset + i) & 0xFF) != other.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        var bytes = new byte[length];
+        data.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
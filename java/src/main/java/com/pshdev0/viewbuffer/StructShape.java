@@ -0,0 +1,117 @@
+package com.pshdev0.viewbuffer;
+
+import java.util.*;
+
+import static com.pshdev0.viewbuffer.ViewBuffer.*;
+
+/**
+ * A struct layout declared once and shared by every instance stamped from it.
+ * <p>
+ * Field offsets, alignment, size and the struct encoding are computed up front with the same rules as the
+ * {@code add*} methods, so a shaped instance is byte for byte identical to one built field by field. {@link #size()}
+ * is padded to the alignment, as an in-situ struct or array element is, matching the reader's struct size. Instances are
+ * created with {@link ViewBufferArena#shaped(StructShape)} and filled with the {@code set*} methods, and arrays created
+ * with {@link ViewBufferArena#shapedArray(StructShape)} only accept instances of the same shape (checked by identity).
+ * <pre>
+ * var DEVICE = StructShape.define("Device").string("id").int32("statusCode").build();
+ * var device = arena.shaped(DEVICE);
+ * device.setString(DEVICE.field("id"), "Device_0");
+ * device.setInt32(DEVICE.field("statusCode"), 100);
+ * </pre>
+ */
+public final class StructShape {
+
+    /**
+     * A field at a fixed offset. {@code type} is the field's encoding type, or the struct name for in-situ structs.
+     */
+    public record Field(StructShape shape, String name, String type, Kind kind, int offset, StructShape inner) {}
+
+    public enum Kind { PRIMITIVE, SLICE, STRUCT }
+
+    final String name;
+    final String encodedName; // "$" + name
+    final String encoding; // the struct's own encoding, shared by every instance
+    final List<Field> fields;
+    final Map<String, Field> fieldsByName;
+    final int fieldsSize; // up to the end of the last field, the size of a shaped instance
+    final int size; // padded to the alignment, as embedded or stored in an array
+    final int alignment;
+
+    private StructShape(Builder builder) {
+        name = builder.name;
+        encodedName = ENCODE_STRUCT + name;
+        encoding = builder.encoding.toString();
+        var fields = new ArrayList<Field>();
+        for(var f : builder.fields) fields.add(new Field(this, f.name(), f.type(), f.kind(), f.offset(), f.inner()));
+        this.fields = Collections.unmodifiableList(fields);
+        var byName = new HashMap<String, Field>();
+        for(var f : fields) byName.put(f.name(), f);
+        fieldsByName = Collections.unmodifiableMap(byName);
+        fieldsSize = builder.size;
+        alignment = Math.max(builder.alignment, 1);
+        size = ViewBufferReader.align(fieldsSize, alignment);
+    }
+
+    public static Builder define(String name) { return new Builder(name); }
+
+    public String name() { return name; }
+    public String encoding() { return encoding; }
+    public List<Field> fields() { return fields; }
+    public int size() { return size; }
+    public int alignment() { return alignment; }
+
+    public Field field(String fieldName) {
+        var field = fieldsByName.get(fieldName);
+        if(field == null) throw new IllegalStateException("Shape " + name + " has no field: " + fieldName);
+        return field;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private final StringBuilder encoding;
+        private final ArrayList<Field> fields = new ArrayList<>();
+        private int size = 0;
+        private int alignment = 0;
+
+        private Builder(String name) {
+            this.name = Objects.requireNonNull(name, "A shape needs a struct name");
+            encoding = new StringBuilder(ENCODE_STRUCT).append(name);
+        }
+
+        public Builder int8(String id) { return add(ENCODE_INT8 + id, id, ENCODE_INT8, Kind.PRIMITIVE, 1, 1, null); }
+        public Builder int16(String id) { return add(ENCODE_INT16 + id, id, ENCODE_INT16, Kind.PRIMITIVE, 2, 2, null); }
+        public Builder int32(String id) { return add(ENCODE_INT32 + id, id, ENCODE_INT32, Kind.PRIMITIVE, 4, 4, null); }
+        public Builder int64(String id) { return add(ENCODE_INT64 + id, id, ENCODE_INT64, Kind.PRIMITIVE, 8, 8, null); }
+        public Builder float32(String id) { return add(ENCODE_FLOAT32 + id, id, ENCODE_FLOAT32, Kind.PRIMITIVE, 4, 4, null); }
+        public Builder float64(String id) { return add(ENCODE_FLOAT64 + id, id, ENCODE_FLOAT64, Kind.PRIMITIVE, 8, 8, null); }
+        public Builder bool(String id) { return add(ENCODE_BOOL + id, id, ENCODE_BOOL, Kind.PRIMITIVE, 1, 1, null); }
+        public Builder string(String id) { return slice(id, ENCODE_STRING); }
+
+        /**
+         * A slice of the given element type, e.g. {@link ViewBuffer#ENCODE_INT8} or a struct name.
+         */
+        public Builder slice(String id, String elementType) {
+            return add(ENCODE_SLICE + id + ENCODE_ARRAY + elementType, id, elementType, Kind.SLICE, 16, 8, null);
+        }
+        public Builder slice(String id, StructShape element) { return slice(id, element.name); }
+
+        /**
+         * A struct stored in-situ, as added with {@link ViewBuffer#addStruct(String, ViewBuffer)}.
+         */
+        public Builder struct(String id, StructShape inner) {
+            return add(ENCODE_INSITU_STRUCT + id + inner.encodedName, id, inner.name, Kind.STRUCT, inner.size, inner.alignment, inner);
+        }
+
+        private Builder add(String token, String id, String type, Kind kind, int fieldSize, int fieldAlignment, StructShape inner) {
+            alignment = Math.max(alignment, fieldAlignment);
+            var remainder = size % fieldAlignment;
+            if(remainder > 0) size += fieldAlignment - remainder;
+            fields.add(new Field(null, id, type, kind, size, inner));
+            size += fieldSize;
+            encoding.append(ENCODE_SEPARATOR).append(token);
+            return this;
+        }
+
+        public StructShape build() { return new StructShape(this); }
+    }
+}
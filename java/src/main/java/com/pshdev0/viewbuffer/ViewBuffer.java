@@ -1,18 +1,19 @@
 package com.pshdev0.viewbuffer;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiConsumer;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 public class ViewBuffer {
 
@@ -25,146 +26,417 @@ public class ViewBuffer {
     public static final String ENCODE_INT8 = "i1";
     public static final String ENCODE_INT16 = "i2";
     public static final String ENCODE_INT32 = "i4";
+    public static final String ENCODE_INT64 = "i8";
     public static final String ENCODE_BYTE_POINTER_32 = "bp";
     public static final String ENCODE_FLOAT32 = "f4";
+    public static final String ENCODE_FLOAT64 = "f8";
     public static final String ENCODE_BOOL = "bl";
     public static final String ENCODE_TAB = "   ";
 
     public static final int HEADER_VBUF_MAGIC = 0x46554256; // "VBUF"
     public static final int HEADER_FATBUFFER_VERSION = 1;
+    public static final int HEADER_FATBUFFER_WIDE_VERSION = 2; // 8-byte blob sizes, offset count and offsets
 
     public static final int HEADER_FLAG_COMPRESS_DATA = 1;
     public static final int HEADER_FLAG_INCLUDE_STRUCT_ENCODING = 2;
     public static final int HEADER_FLAG_INCLUDE_STRUCT_ENCODING_VERSION_HASH = 4;
     public static final int HEADER__TODO__COMPRESS_STRUCT_ENCODING = 8;
+    public static final int HEADER_FLAG_CHUNKED_COMPRESSION = 16;
+    public static final int HEADER_FLAG_COMPACT_OFFSETS = 32;
+
+    // the largest array most VMs will allocate; a single buffer's limit, though a blob of many buffers may be larger
+    static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+    static final int HEADER_FIXED_SIZE = 20;
+    static final int HEADER_WIDE_FIXED_SIZE = 28;
+    static final int HEADER_COMPRESSED_BLOB_SIZE_INDEX = 12;
+    static final int STREAM_BUFFER_SIZE = 1 << 16;
 
     enum Type { STRUCT, ARRAY }
+
+    /**
+     * A slice slot at {@code position} within the owning buffer's bytes which must point at {@code target}.
+     */
+    record Relocation(int position, ViewBuffer target) {}
+
+    ViewBufferArena arena; // changes only when a parallel builder's arena is adopted
     Type type;
-    static int staticOffsetIndex = -1;
-    static final HashMap<Integer, ViewBuffer> staticBuffers = new HashMap<>();
+    Type initialType;
     String structString = "";
+    String initialStructString = "";
 
-    ArrayList<Integer> bytes = new ArrayList<>();
-    int bufferOffsetIndex;
+    byte[] bytes = new byte[16]; // little-endian, always zero beyond size
+    int size = 0;
+    ArrayList<Relocation> relocations = new ArrayList<>(); // slices owned by this buffer, linked in asByteBuffer
+    ArrayList<ViewBuffer> embedded = new ArrayList<>(); // structs copied in, one per distinct encoding, see schema()
     boolean locked = false;
     int arrayLength = 0;
     int maxAlignment = 0;
+    StructShape shape; // the fixed layout of a shaped struct, or the element shape of a shaped array
+    long blobPosition; // set by BlobLayout
+    long layoutMark; // set by BlobLayout
 
-    private ViewBuffer(String id, Type bufferType) {
-        type = bufferType;
-        staticBuffers.put(staticOffsetIndex, this);
-        bufferOffsetIndex = staticOffsetIndex--;
-        if(id != null) structString += id;
-    }
-
-    public static ViewBuffer arrayOf(String id) { return new ViewBuffer(id, Type.ARRAY); }
-    public static ViewBuffer struct(String id) { return new ViewBuffer(id != null ? ENCODE_STRUCT + id : null, Type.STRUCT); }
-    public static ViewBuffer string(String stringBufferContents) {
-        var bytesToAdd = stringBufferContents.getBytes();
-        return buildArray(ENCODE_STRING, bytesToAdd.length, 1, (i, buf) -> buf.bytes.add(bytesToAdd[i] & 0xFF));
-    }
-    public static ViewBuffer byteArray(byte... bytesToAdd) {
-        return buildArray(ENCODE_INT8, bytesToAdd.length, 1, (i, buf) -> buf.bytes.add(bytesToAdd[i] & 0xFF));
-    }
-    public static ViewBuffer shortArray(short... shortsToAdd) throws IllegalStateException {
-        return buildArray(ENCODE_INT16, shortsToAdd.length, 2, (i, buf) -> buf.addInt16(null, shortsToAdd[i]));
-    }
-    public static ViewBuffer intArray(int... intsToAdd) {
-        return buildArray(ENCODE_INT32,intsToAdd.length, 4, (i, buf) -> buf.addInt32(null, intsToAdd[i]));
-    }
-    public static ViewBuffer floatArray(float... floatsToAdd) {
-        return buildArray(ENCODE_FLOAT32, floatsToAdd.length, 4, (i, buf) -> buf.addFloat32(null, floatsToAdd[i]));
-    }
+    ViewBuffer(ViewBufferArena owner) { arena = owner; }
 
-    private static ViewBuffer buildArray(String id, int count, int alignment, BiConsumer<Integer, ViewBuffer> addBytes) {
-        var buffer = struct(null); // use STRUCT initially to disable ARRAY warnings
-        for (int i = 0; i < count; i++) addBytes.accept(i, buffer);
-        buffer.arrayLength = count;
-        buffer.locked = true;
-        buffer.maxAlignment = alignment;
-        buffer.type = Type.ARRAY; // switch to ARRAY
-        buffer.structString = id;
-        return buffer;
+    void init(String id, Type bufferType) {
+        type = initialType = bufferType;
+        structString = initialStructString = id != null ? id : "";
+        shape = null;
     }
 
-    public void addString(String id, String str) { addArraySlice(id, ViewBuffer.string(str)); }
+    /*
+        the static factories build into the calling thread's default arena, which the thread lets go of once a
+        document built in it is written, see ViewBufferArena.current() - deprecated in favour of an explicit arena
+        per document stream
+     */
+
+    @Deprecated public static ViewBuffer arrayOf(String id) { return ViewBufferArena.current().arrayOf(id); }
+    @Deprecated public static ViewBuffer struct(String id) { return ViewBufferArena.current().struct(id); }
+    @Deprecated public static ViewBuffer shapedArray(StructShape elementShape) { return ViewBufferArena.current().shapedArray(elementShape); }
+    @Deprecated public static ViewBuffer shaped(StructShape structShape) { return ViewBufferArena.current().shaped(structShape); }
+    @Deprecated public static ViewBuffer string(String stringBufferContents) { return ViewBufferArena.current().string(stringBufferContents); }
+    @Deprecated public static ViewBuffer byteArray(byte... bytesToAdd) { return ViewBufferArena.current().byteArray(bytesToAdd); }
+    @Deprecated public static ViewBuffer shortArray(short... shortsToAdd) throws IllegalStateException { return ViewBufferArena.current().shortArray(shortsToAdd); }
+    @Deprecated public static ViewBuffer intArray(int... intsToAdd) { return ViewBufferArena.current().intArray(intsToAdd); }
+    @Deprecated public static ViewBuffer longArray(long... longsToAdd) { return ViewBufferArena.current().longArray(longsToAdd); }
+    @Deprecated public static ViewBuffer floatArray(float... floatsToAdd) { return ViewBufferArena.current().floatArray(floatsToAdd); }
+    @Deprecated public static ViewBuffer doubleArray(double... doublesToAdd) { return ViewBufferArena.current().doubleArray(doublesToAdd); }
+    @Deprecated public static ViewBuffer byteArray(ByteBuffer bytesToAdd) { return ViewBufferArena.current().byteArray(bytesToAdd); }
+    @Deprecated public static ViewBuffer shortArray(ShortBuffer shortsToAdd) { return ViewBufferArena.current().shortArray(shortsToAdd); }
+    @Deprecated public static ViewBuffer intArray(IntBuffer intsToAdd) { return ViewBufferArena.current().intArray(intsToAdd); }
+    @Deprecated public static ViewBuffer longArray(LongBuffer longsToAdd) { return ViewBufferArena.current().longArray(longsToAdd); }
+    @Deprecated public static ViewBuffer floatArray(FloatBuffer floatsToAdd) { return ViewBufferArena.current().floatArray(floatsToAdd); }
+    @Deprecated public static ViewBuffer doubleArray(DoubleBuffer doublesToAdd) { return ViewBufferArena.current().doubleArray(doublesToAdd); }
+
+    public ViewBufferArena arena() { return arena; }
+
+    public void addString(String id, String str) { addArraySlice(id, arena.string(str)); }
     public void addBool(String id, boolean ... list) { for (var b : list) addBool(ENCODE_BOOL + id, b); }
     public void addInt32(String id, int ... list) { for (var i : list) addInt32(ENCODE_INT32 + id, i); }
     public void addFloat32(String id, float ... list) { for(var f : list) addFloat32(ENCODE_FLOAT32 + id, f); }
 
     public int addStruct(String id, ViewBuffer zcb) {
-        var structName = zcb.structString.split(ENCODE_SEPARATOR)[0];
-        return addBytes(ENCODE_INSITU_STRUCT +id + structName, zcb.maxAlignment, zcb.bytes.toArray(Integer[]::new));
+        checkArena(zcb);
+        var structName = structName(zcb);
+        var index = addBytes(ENCODE_INSITU_STRUCT +id + structName, zcb.maxAlignment, paddedSize(zcb));
+        copyFrom(zcb, index);
+        embed(zcb);
+        return index;
     }
 
     public int addArraySlice(String id, ViewBuffer zcb) {
-        var i = zcb.bufferOffsetIndex;
-        return addBytes(ENCODE_SLICE + id + ENCODE_ARRAY + zcb.structString, 8, i, i, i, i, i, i, i, i, 0, 0, 0, 0, 0, 0, 0, 0);
+        checkArena(zcb);
+        var index = addBytes(ENCODE_SLICE + id + ENCODE_ARRAY + zcb.structString, 8, 16);
+        relocations.add(new Relocation(index, zcb)); // the slot is filled in when linking
+        arena.encodingChanged(); // zcb is now reachable
+        return index;
     }
 
     public int addInt8(String id, int value) {
-        return addBytes(ENCODE_INT8 + id, 1, value & 255);
+        var index = addBytes(ENCODE_INT8 + id, 1, 1);
+        bytes[index] = (byte) value;
+        return index;
     }
 
     public int addInt32(String id, int value) {
-        return addBytes(ENCODE_INT32 + id, 4, value & 255, (value >> 8) & 255, (value >> 16) & 255, (value >> 24) & 255);
+        var index = addBytes(ENCODE_INT32 + id, 4, 4);
+        setInt32Index(index, value);
+        return index;
+    }
+
+    public int addInt64(String id, long value) {
+        var index = addBytes(ENCODE_INT64 + id, 8, 8);
+        setInt32Index(index, (int) value);
+        setInt32Index(index + 4, (int) (value >> 32));
+        return index;
     }
 
     public int addNullPointerSlice(String id, String type) {
-        return addBytes(ENCODE_SLICE + id + ENCODE_ARRAY + type, 8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        return addBytes(ENCODE_SLICE + id + ENCODE_ARRAY + type, 8, 16);
     }
 
     public int addFloat32(String id, float value) {
-        var bits = Float.floatToIntBits(value);
-        return addBytes(ENCODE_FLOAT32 + id, 4, bits & 255, (bits >> 8) & 255, (bits >> 16) & 255, (bits >> 24) & 255);
+        var index = addBytes(ENCODE_FLOAT32 + id, 4, 4);
+        setInt32Index(index, Float.floatToIntBits(value));
+        return index;
+    }
+
+    public int addFloat64(String id, double value) {
+        var index = addBytes(ENCODE_FLOAT64 + id, 8, 8);
+        var bits = Double.doubleToLongBits(value);
+        setInt32Index(index, (int) bits);
+        setInt32Index(index + 4, (int) (bits >> 32));
+        return index;
     }
 
     public int addInt16(String id, int value) {
-        return addBytes(ENCODE_INT16 + id, 2, value & 255, (value >> 8) & 255);
+        var index = addBytes(ENCODE_INT16 + id, 2, 2);
+        bytes[index] = (byte) value;
+        bytes[index + 1] = (byte) (value >> 8);
+        return index;
     }
 
     public int addBool(String id, boolean value) {
-        return addBytes(ENCODE_BOOL + id, 1, value ? 1 : 0);
+        var index = addBytes(ENCODE_BOOL + id, 1, 1);
+        bytes[index] = (byte) (value ? 1 : 0);
+        return index;
     }
 
-    private int addBytes(String id, int alignment, Integer ... bytesToAdd) {
+    /**
+     * Reserves {@code count} zeroed bytes at the given alignment and returns their start index.
+     */
+    private int addBytes(String id, int alignment, int count) {
         if(type.equals(Type.ARRAY)) throw new IllegalStateException("Warning - illegal operation on array buffer");
         if(locked) throw new IllegalStateException("Cannot alter locked buffers - switch your addition order");
+        if(shape != null) throw new IllegalStateException("Cannot add fields to a " + shape.name + " shape - use the set methods");
         alignTo(alignment);
-        int startIndex = bytes.size();
-        bytes.addAll(Arrays.asList(bytesToAdd));
-        if(id != null) structString += ENCODE_SEPARATOR + id;
+        int startIndex = size;
+        grow(count);
+        // only named structs contribute to the struct encoding, so unnamed buffers (e.g. the header) skip the concat
+        if(id != null && structString.startsWith(ENCODE_STRUCT)) {
+            structString += ENCODE_SEPARATOR + id;
+            arena.encodingChanged();
+        }
         return startIndex;
     }
 
+    // the struct's "$Name" token, without copying its whole encoding
+    static String structName(ViewBuffer zcb) {
+        if(zcb.shape != null && zcb.type == Type.STRUCT) return zcb.shape.encodedName;
+        var end = zcb.structString.indexOf(ENCODE_SEPARATOR);
+        return end < 0 ? zcb.structString : zcb.structString.substring(0, end);
+    }
+
+    /*
+        shaped structs have every field in place from the start, so fields are set (in any order) rather than added
+     */
+
+    public void setInt8(StructShape.Field field, int value) { bytes[checkField(field, ENCODE_INT8)] = (byte) value; }
+    public void setInt16(StructShape.Field field, int value) {
+        var index = checkField(field, ENCODE_INT16);
+        bytes[index] = (byte) value;
+        bytes[index + 1] = (byte) (value >> 8);
+    }
+    public void setInt32(StructShape.Field field, int value) { setInt32Index(checkField(field, ENCODE_INT32), value); }
+    public void setInt64(StructShape.Field field, long value) {
+        var index = checkField(field, ENCODE_INT64);
+        setInt32Index(index, (int) value);
+        setInt32Index(index + 4, (int) (value >> 32));
+    }
+    public void setFloat32(StructShape.Field field, float value) {
+        setInt32Index(checkField(field, ENCODE_FLOAT32), Float.floatToIntBits(value));
+    }
+    public void setFloat64(StructShape.Field field, double value) {
+        var index = checkField(field, ENCODE_FLOAT64);
+        var bits = Double.doubleToLongBits(value);
+        setInt32Index(index, (int) bits);
+        setInt32Index(index + 4, (int) (bits >> 32));
+    }
+    public void setBool(StructShape.Field field, boolean value) { bytes[checkField(field, ENCODE_BOOL)] = (byte) (value ? 1 : 0); }
+    public void setString(StructShape.Field field, String str) { setArraySlice(field, arena.string(str)); }
+
+    public void setArraySlice(StructShape.Field field, ViewBuffer zcb) {
+        checkArena(zcb);
+        var index = checkField(field, field.type());
+        if(field.kind() != StructShape.Kind.SLICE) throw new IllegalStateException("Field " + field.name() + " is not a slice");
+        if(!zcb.structString.equals(field.type())) {
+            throw new IllegalStateException("Field " + field.name() + " expects a slice of " + field.type() + " but was given " + zcb.structString);
+        }
+        var relocation = new Relocation(index, zcb);
+        var i = firstRelocationAt(index);
+        if(i < relocations.size() && relocations.get(i).position() == index) relocations.set(i, relocation);
+        else relocations.add(i, relocation); // keep relocations in position order
+        arena.encodingChanged();
+    }
+
+    public void setStruct(StructShape.Field field, ViewBuffer zcb) {
+        checkArena(zcb);
+        var index = checkField(field, field.type());
+        if(field.kind() != StructShape.Kind.STRUCT || zcb.shape != field.inner() || zcb.type != Type.STRUCT) {
+            throw new IllegalStateException("Field " + field.name() + " expects a " + field.type() + " shaped struct");
+        }
+        // drop the relocations of any struct previously set here, then splice in the new ones in order
+        var from = firstRelocationAt(index);
+        relocations.subList(from, firstRelocationAt(index + zcb.size)).clear();
+        System.arraycopy(zcb.bytes, 0, bytes, index, zcb.size);
+        var inserted = new ArrayList<Relocation>(zcb.relocations.size());
+        for(var r : zcb.relocations) inserted.add(new Relocation(index + r.position(), r.target()));
+        relocations.addAll(from, inserted);
+        embed(zcb);
+    }
+
+    public void setInt8(String id, int value) { setInt8(field(id), value); }
+    public void setInt16(String id, int value) { setInt16(field(id), value); }
+    public void setInt32(String id, int value) { setInt32(field(id), value); }
+    public void setInt64(String id, long value) { setInt64(field(id), value); }
+    public void setFloat32(String id, float value) { setFloat32(field(id), value); }
+    public void setFloat64(String id, double value) { setFloat64(field(id), value); }
+    public void setBool(String id, boolean value) { setBool(field(id), value); }
+    public void setString(String id, String str) { setString(field(id), str); }
+    public void setArraySlice(String id, ViewBuffer zcb) { setArraySlice(field(id), zcb); }
+    public void setStruct(String id, ViewBuffer zcb) { setStruct(field(id), zcb); }
+
+    private StructShape.Field field(String id) {
+        if(shape == null || type != Type.STRUCT) throw new IllegalStateException("Only shaped structs have named fields to set");
+        return shape.field(id);
+    }
+
+    // validates a set against this buffer's shape and returns the field's index
+    private int checkField(StructShape.Field field, String fieldType) {
+        if(type != Type.STRUCT || shape == null || field.shape() != shape) {
+            throw new IllegalStateException("Field " + field.name() + " does not belong to this struct's shape");
+        }
+        if(!field.type().equals(fieldType)) throw new IllegalStateException("Field " + field.name() + " is not of type " + fieldType);
+        if(locked) throw new IllegalStateException("Cannot alter locked buffers - set fields before adding to an array");
+        return field.offset();
+    }
+
+    // the index of the first relocation at or after position (relocations are sorted by position)
+    private int firstRelocationAt(int position) {
+        int low = 0, high = relocations.size();
+        while(low < high) {
+            var mid = (low + high) >>> 1;
+            if(relocations.get(mid).position() < position) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
     public void addArrayItem(ViewBuffer zcb) {
         if(!type.equals(Type.ARRAY)) throw new IllegalStateException("Warning - this buffer is not an array - use ZeroCopyStruct.array()");
         if(maxAlignment > 0 && zcb.maxAlignment != maxAlignment) {
             throw new IllegalStateException("The buffer you are adding to this array has a different alignment to a previously added element");
         }
+        if(shape != null && zcb.shape != shape) {
+            throw new IllegalStateException("Only " + shape.name + " shaped structs can be added to this array");
+        }
+        checkArena(zcb);
         alignTo(zcb.maxAlignment);
-        bytes.addAll(zcb.bytes);
+        var index = size;
+        grow(paddedSize(zcb));
+        copyFrom(zcb, index);
+        embed(zcb);
         arrayLength++;
         zcb.locked = true; // once a buffers bytes are added they cannot be altered
     }
 
+    // appends every element of another array with one copy, exactly as if each had been added in turn
+    void addArrayItems(ViewBuffer segment) {
+        if(segment.arrayLength == 0) return;
+        if(maxAlignment > 0 && segment.maxAlignment != maxAlignment) {
+            throw new IllegalStateException("The buffer you are adding to this array has a different alignment to a previously added element");
+        }
+        alignTo(segment.maxAlignment);
+        var index = size;
+        grow(segment.size);
+        copyFrom(segment, index);
+        for(var e : segment.embedded) addEmbedded(e);
+        arrayLength += segment.arrayLength;
+    }
+
+    private void checkArena(ViewBuffer zcb) {
+        if(zcb.arena != arena) throw new IllegalStateException("Buffers from different arenas cannot be combined");
+    }
+
+    /**
+     * A struct's size padded to its alignment, as it is embedded in-situ or stored as an array element, so each
+     * element starts aligned and the field after an embedded struct starts where readers (and D's sizeof) expect.
+     */
+    static int paddedSize(ViewBuffer zcb) {
+        var remainder = zcb.maxAlignment > 0 ? zcb.size % zcb.maxAlignment : 0;
+        return remainder == 0 ? zcb.size : zcb.size + zcb.maxAlignment - remainder;
+    }
+
+    // records a struct copied into this buffer, and those copied into it, so their encodings reach the schema
+    private void embed(ViewBuffer zcb) {
+        addEmbedded(zcb);
+        for(var e : zcb.embedded) addEmbedded(e);
+    }
+
+    private void addEmbedded(ViewBuffer zcb) {
+        if(!zcb.structString.startsWith(ENCODE_STRUCT)) return;
+        for(var e : embedded) if(e.structString.equals(zcb.structString)) return; // e.g. every element of an array
+        embedded.add(zcb);
+        arena.encodingChanged();
+    }
+
+    // copies another buffer's bytes (and its relocations) to the given index
+    private void copyFrom(ViewBuffer zcb, int index) {
+        System.arraycopy(zcb.bytes, 0, bytes, index, zcb.size);
+        for(var r : zcb.relocations) relocations.add(new Relocation(index + r.position(), r.target()));
+    }
+
     private void alignTo(int alignment) {
         if(maxAlignment < alignment) maxAlignment = alignment;
-        while (bytes.size() % alignment > 0) bytes.add(0);
+        var remainder = size % alignment;
+        if(remainder > 0) grow(alignment - remainder);
     }
 
+    // extends size by count zeroed bytes, doubling the backing array (up to MAX_BUFFER_SIZE) as required
+    void grow(int count) {
+        int required;
+        try {
+            required = Math.addExact(size, count);
+        } catch (ArithmeticException e) {
+            required = Integer.MAX_VALUE;
+        }
+        if(required > MAX_BUFFER_SIZE) {
+            throw new IllegalStateException("Buffer of " + ((long) size + count) + " bytes exceeds the per-buffer limit of " + MAX_BUFFER_SIZE + " bytes, split it across several buffers");
+        }
+        if(required > bytes.length) bytes = Arrays.copyOf(bytes, (int) Math.min(Math.max(required, 2L * bytes.length), MAX_BUFFER_SIZE));
+        size = required;
+    }
+
+    /**
+     * Empties this buffer so it can be refilled, keeping its id, type and backing array.
+     * Use {@link ViewBufferArena#reset()} to recycle every buffer of a document at once.
+     */
     public void reset() {
-        // todo - clear everything
-        //        in the calling program we may need to create a new buffer!
+        var keepShape = shape;
+        clear();
+        init(initialStructString, initialType);
+        arena.encodingChanged();
+        shape = keepShape;
+        if(shape != null && type == Type.STRUCT) {
+            grow(shape.fieldsSize);
+            maxAlignment = shape.alignment;
+        }
     }
 
+    void clear() {
+        Arrays.fill(bytes, 0, size, (byte) 0);
+        size = 0;
+        relocations.clear();
+        embedded.clear();
+        locked = false;
+        arrayLength = 0;
+        maxAlignment = 0;
+    }
+
+    /**
+     * Java flyweight classes for the structs of the encoding, nested in one class, see {@link FlyweightGenerator}.
+     *
+     * @param packageName the package of the generated class, or null for the default package
+     */
+    public static String generateJava(String structEncoding, String packageName, String className) {
+        return FlyweightGenerator.generate(structEncoding, packageName, className);
+    }
+
+    /**
+     * D struct definitions for the encoding, see also {@link SchemaRegistry.Schema#generateStructs()}.
+     */
     public String generateStructs(String structEncoding) {
+        return structsOf(structEncoding);
+    }
+
+    static String structsOf(String structEncoding) {
         var types = Map.of(
                 ENCODE_STRING, "immutable(char)",
                 ENCODE_INT8, "ubyte",
                 ENCODE_INT16, "short",
                 ENCODE_INT32, "int",
+                ENCODE_INT64, "long",
                 ENCODE_FLOAT32, "float",
+                ENCODE_FLOAT64, "double",
                 ENCODE_BOOL, "bool",
                 ENCODE_BYTE_POINTER_32, "ubyte*"
         );
@@ -207,184 +479,493 @@ public class ViewBuffer {
     }
 
     public ByteBuffer asByteBuffer(short userDefinedVersion, boolean includeStructEncoding, boolean includeStructEncodingVersionHash, boolean compressBlob) {
-        final var structEncoding = getStructEncodingString();
-        System.out.println(generateStructs(structEncoding));
-
-        /*
-         * build the data blob first
-         */
-        HashMap<Integer, Integer> offsetIndexPositions = new HashMap<>();
-        List<Integer> buffersToAdd = new ArrayList<>();
-        buffersToAdd.add(bufferOffsetIndex);
-        var blob = arrayOf(null);
-
-        // build the linear blob, recording the data start positions of each offset
-        while(!buffersToAdd.isEmpty()) {
-            int prevBlobSize = blob.size();
-            for(var oi : buffersToAdd) {
-                offsetIndexPositions.put(oi, blob.size());
-                blob.bytes.addAll(staticBuffers.get(oi).bytes);
-//                blob.alignTo(4);
+        return asByteBuffer(userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compressBlob ? Compression.DEFAULT : null);
+    }
+
+    /**
+     * @param compression the blob compression settings, or null to leave the blob uncompressed
+     */
+    public ByteBuffer asByteBuffer(short userDefinedVersion, boolean includeStructEncoding, boolean includeStructEncodingVersionHash, Compression compression) {
+        var timer = arena.writeTimer.start();
+        var layout = arena.layout(this);
+        var blobSize = layout.intSize();
+        timer.layoutNanos = timer.lap();
+        var header = buildHeader(layout, userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression);
+        timer.headerNanos = timer.lap();
+        ByteBuffer out;
+        if(compression == null) {
+            out = ByteBuffer.allocate(Math.addExact(header.size, blobSize));
+            out.put(header.bytes, 0, header.size);
+            layout.writeTo(out);
+            timer.linkNanos = timer.lap();
+        }
+        else {
+            // deflate into the arena's reusable blob buffer, then copy once into an exactly sized result
+            var blob = arena.blobScratch();
+            try {
+                header.setChunkTable(writeBlob(layout, new AppendingOutputStream(blob), compression));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // never thrown by an in-memory stream
             }
-            AtomicInteger index = new AtomicInteger();
-            buffersToAdd = blob.bytes.stream()
-                    .filter(x -> index.getAndIncrement() >= prevBlobSize && x < 0)
-                    .distinct().toList();
-        }
-
-        // now go through the whole blob, replacing negative offset entries with data start positions
-        ArrayList<Integer> locationsWhereBaseShouldBeAdded = new ArrayList<>();
-        for(var index = 0; index < blob.size() ; index++) {
-            // replace offset with pointer offset
-            var v = blob.bytes.get(index);
-            if(v < 0) {
-                locationsWhereBaseShouldBeAdded.add(index);
-                blob.setInt32Index(index, offsetIndexPositions.get(v)); // write the slice offset
-                blob.setInt32Index(index + 4, 0); // 4GB max offset since top 4 bytes are set to 0
-                blob.setInt32Index(index + 8, staticBuffers.get(v).arrayLength); // write the slice length
-                blob.setInt32Index(index + 12, 0); // max length 2,147,483,647, or double this?
-                index += 15; // the for loop will do the 1 extra step to 16 bytes
+            header.setCompressedBlobSize(blob.size);
+            out = ByteBuffer.allocate(header.size + blob.size);
+            out.put(header.bytes, 0, header.size);
+            out.put(blob.bytes, 0, blob.size);
+            timer.compressNanos = timer.lap();
+        }
+
+        timer.written(layout, header.size, out.position() - header.size);
+        arena.written();
+        return out.flip();
+    }
+
+    /**
+     * The exact number of bytes {@link #writeTo(ByteBuffer, short, boolean, boolean, Compression)} writes for an
+     * uncompressed document with these settings.
+     */
+    public int serializedSize(boolean includeStructEncoding, boolean includeStructEncodingVersionHash) {
+        var layout = arena.layout(this);
+        return Math.addExact(headerSize(layout, includeStructEncoding, includeStructEncodingVersionHash, null), layout.intSize());
+    }
+
+    /**
+     * An upper bound on the number of bytes {@link #writeTo(ByteBuffer, short, boolean, boolean, Compression)} writes,
+     * exact when the compression is null.
+     */
+    public int maxSerializedSize(boolean includeStructEncoding, boolean includeStructEncodingVersionHash, Compression compression) {
+        var layout = arena.layout(this);
+        return Math.toIntExact(headerSize(layout, includeStructEncoding, includeStructEncodingVersionHash, compression)
+                + maxBlobSize(layout, compression));
+    }
+
+    // an upper bound on the blob bytes written, exact when the compression is null
+    private static long maxBlobSize(BlobLayout layout, Compression compression) {
+        var blobSize = layout.size;
+        if(compression != null && compression.isChunked()) {
+            var chunkSize = compression.chunkSize();
+            var fullChunks = blobSize / chunkSize;
+            blobSize = fullChunks * Compression.deflateBound(chunkSize) + (blobSize % chunkSize > 0 ? Compression.deflateBound(blobSize % chunkSize) : 0);
+        }
+        else if(compression != null) blobSize = Compression.deflateBound(blobSize);
+        return blobSize;
+    }
+
+    /**
+     * Whether a document is written in the wide format (version 2), as its arena requests, or because a blob size or
+     * slice offset might not fit the 4-byte fields of version 1.
+     */
+    private boolean isWide(BlobLayout layout, Compression compression) {
+        return arena.isWideFormat() || maxBlobSize(layout, compression) > Integer.MAX_VALUE;
+    }
+
+    /**
+     * Writes the document into the buffer, which may be direct, starting at its position and advancing it. The blob
+     * is written straight into the buffer, so with an uncompressed document nothing is allocated beyond the layout.
+     * Use {@link #serializedSize} or {@link #maxSerializedSize} to size the buffer.
+     *
+     * @param compression the blob compression settings, or null to leave the blob uncompressed
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the buffer is too small, in which case its contents and position are undefined
+     */
+    public int writeTo(ByteBuffer dst, short userDefinedVersion, boolean includeStructEncoding,
+                       boolean includeStructEncodingVersionHash, Compression compression) {
+        var start = dst.position();
+        var timer = arena.writeTimer.start();
+        var layout = arena.layout(this);
+        timer.layoutNanos = timer.lap();
+        var header = buildHeader(layout, userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression);
+        timer.headerNanos = timer.lap();
+        if(compression == null && dst.remaining() < (long) header.size + layout.size) throw new BufferOverflowException();
+        dst.put(header.bytes, 0, header.size);
+
+        if(compression == null) {
+            layout.writeTo(dst);
+            timer.linkNanos = timer.lap();
+        }
+        else if(compression.isChunked()) {
+            try {
+                header.setChunkTable(writeBlob(layout, new ByteBufferOutputStream(dst), compression));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // never thrown by an in-memory stream
+            }
+        }
+        else {
+            var blob = arena.blobScratch();
+            layout.copyTo(blob);
+            timer.linkNanos = timer.lap();
+            var deflater = compression.deflater();
+            deflater.setInput(blob.bytes, 0, blob.size);
+            deflater.finish();
+            while(!deflater.finished()) {
+                if(!dst.hasRemaining()) throw new BufferOverflowException();
+                deflater.deflate(dst);
             }
         }
 
-        if(!blob.bytes.stream().filter(x -> x < 0 || x > 255).toList().isEmpty()) throw new IllegalStateException("Invalid blob value found");
+        // patch the compressed size and chunk table
+        var sizeWidth = header.setCompressedBlobSize(dst.position() - start - header.size);
+        dst.put(start + HEADER_COMPRESSED_BLOB_SIZE_INDEX, header.bytes, HEADER_COMPRESSED_BLOB_SIZE_INDEX, sizeWidth);
+        if(compression != null && compression.isChunked()) {
+            var tableIndex = header.size - 4 * ChunkedDeflaterOutputStream.chunkCount(layout.size, compression.chunkSize());
+            dst.put(start + tableIndex, header.bytes, tableIndex, header.size - tableIndex);
+        }
+        if(compression != null) timer.compressNanos = timer.lap();
+        timer.written(layout, header.size, dst.position() - start - header.size);
+        arena.written();
+        return dst.position() - start;
+    }
 
-        /*
-            build the header second
-         */
-        var header = struct(null);
+    public long writeTo(WritableByteChannel channel, short userDefinedVersion, boolean includeStructEncoding,
+                        boolean includeStructEncodingVersionHash, boolean compressBlob) throws IOException {
+        return writeTo(channel, userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compressBlob ? Compression.DEFAULT : null);
+    }
+
+    /**
+     * Streams the document to the channel without materialising the blob, so peak memory stays near the size of the
+     * header. A compressed blob is deflated on the way out and its size (and chunk table) is back-patched into the
+     * header when the channel is seekable, otherwise it is precomputed with an extra compression pass.
+     *
+     * @param compression the blob compression settings, or null to leave the blob uncompressed
+     * @return the total number of bytes written
+     */
+    public long writeTo(WritableByteChannel channel, short userDefinedVersion, boolean includeStructEncoding,
+                        boolean includeStructEncodingVersionHash, Compression compression) throws IOException {
+        var seekable = channel instanceof SeekableByteChannel ? (SeekableByteChannel) channel : null;
+        var start = seekable != null ? seekable.position() : 0;
+
+        var timer = arena.writeTimer.start();
+        var layout = arena.layout(this);
+        timer.layoutNanos = timer.lap();
+        var header = buildHeader(layout, userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression);
+        timer.headerNanos = timer.lap();
+        if(compression != null && seekable == null) {
+            var counter = new CountingOutputStream(OutputStream.nullOutputStream(), null);
+            header.setChunkTable(writeBlob(layout, counter, compression));
+            header.setCompressedBlobSize(counter.count);
+            timer.compressNanos = timer.lap();
+        }
+
+        var out = ByteBuffer.wrap(header.bytes, 0, header.size);
+        while(out.hasRemaining()) channel.write(out);
+        timer.ioNanos = timer.lap();
+
+        var counter = new CountingOutputStream(Channels.newOutputStream(channel), timer);
+        var chunkSizes = writeBlob(layout, counter, compression);
+        var blobNanos = timer.lap() - counter.nanos; // the time not spent in the channel
+        if(compression == null) timer.linkNanos = blobNanos;
+        else timer.compressNanos += blobNanos;
+        timer.ioNanos += counter.nanos;
+
+        if(compression != null && seekable != null) {
+            var end = seekable.position();
+            header.setChunkTable(chunkSizes);
+            var sizeWidth = header.setCompressedBlobSize(counter.count);
+            var tableIndex = header.size - 4 * chunkSizes.size();
+            writeAt(seekable, start + HEADER_COMPRESSED_BLOB_SIZE_INDEX, ByteBuffer.wrap(header.bytes, HEADER_COMPRESSED_BLOB_SIZE_INDEX, sizeWidth));
+            writeAt(seekable, start + tableIndex, ByteBuffer.wrap(header.bytes, tableIndex, header.size - tableIndex));
+            seekable.position(end);
+            timer.ioNanos += timer.lap();
+        }
+
+        timer.written(layout, header.size, counter.count);
+        arena.written();
+        return header.size() + counter.count;
+    }
+
+    private static void writeAt(SeekableByteChannel channel, long position, ByteBuffer src) throws IOException {
+        channel.position(position);
+        while(src.hasRemaining()) channel.write(src);
+    }
+
+    public long writeTo(OutputStream out, short userDefinedVersion, boolean includeStructEncoding,
+                        boolean includeStructEncodingVersionHash, boolean compressBlob) throws IOException {
+        return writeTo(out, userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compressBlob ? Compression.DEFAULT : null);
+    }
+
+    /**
+     * Streams the document to the output stream, see {@link #writeTo(WritableByteChannel, short, boolean, boolean, Compression)}.
+     * The stream is flushed but not closed.
+     */
+    public long writeTo(OutputStream out, short userDefinedVersion, boolean includeStructEncoding,
+                        boolean includeStructEncodingVersionHash, Compression compression) throws IOException {
+        var written = writeTo(new StreamChannel(out), userDefinedVersion, includeStructEncoding, includeStructEncodingVersionHash, compression);
+        out.flush();
+        return written;
+    }
+
+    /**
+     * @return the compressed size of each chunk, empty unless the compression is chunked
+     */
+    private List<Integer> writeBlob(BlobLayout layout, OutputStream out, Compression compression) throws IOException {
+        if(compression == null) {
+            var buffered = new BufferedOutputStream(out, STREAM_BUFFER_SIZE);
+            layout.writeTo(buffered);
+            buffered.flush();
+            return List.of();
+        }
+        if(compression.isChunked()) {
+            var chunked = arena.chunkedStream(out, compression);
+            layout.writeTo(chunked);
+            chunked.finish();
+            return chunked.chunkSizes;
+        }
+        var deflated = new DeflaterOutputStream(out, compression.deflater(), STREAM_BUFFER_SIZE);
+        var buffered = new BufferedOutputStream(deflated, STREAM_BUFFER_SIZE);
+        layout.writeTo(buffered);
+        buffered.flush();
+        deflated.finish();
+        return List.of();
+    }
+
+    private ViewBuffer buildHeader(BlobLayout layout, short userDefinedVersion, boolean includeStructEncoding,
+                                   boolean includeStructEncodingVersionHash, Compression compression) {
+        var schema = schema(layout);
+        var chunked = compression != null && compression.isChunked();
+        var chunkCount = chunked ? ChunkedDeflaterOutputStream.chunkCount(layout.size, compression.chunkSize()) : 0;
+        var wide = isWide(layout, compression);
+
+        // the header is sized up front and filled in place, copying the schema's cached hash and encoding bytes
+        var header = arena.headerScratch();
+        header.grow(headerSize(layout, includeStructEncoding, includeStructEncodingVersionHash, compression));
 
         // ViewBuffer magic + version
-        header.addInt32(null, HEADER_VBUF_MAGIC);
-        header.addInt8(null, HEADER_FATBUFFER_VERSION); // version 1
+        header.setInt32Index(0, HEADER_VBUF_MAGIC);
+        header.bytes[4] = (byte) (wide ? HEADER_FATBUFFER_WIDE_VERSION : HEADER_FATBUFFER_VERSION);
 
         // flags
         int flags = 0;
-        flags |= compressBlob ? HEADER_FLAG_COMPRESS_DATA : 0;
+        flags |= compression != null ? compression.flags() : 0;
         flags |= includeStructEncoding ? HEADER_FLAG_INCLUDE_STRUCT_ENCODING : 0;
         flags |= includeStructEncodingVersionHash ? HEADER_FLAG_INCLUDE_STRUCT_ENCODING_VERSION_HASH : 0;
-        header.addInt8(null, flags); // not compressed, includes encoding and encoding hash
+        flags |= arena.isCompactingOffsets() ? HEADER_FLAG_COMPACT_OFFSETS : 0;
+        header.bytes[5] = (byte) flags;
 
         // user-defined blob version number
-        header.addInt16(null, userDefinedVersion);
+        header.bytes[6] = (byte) userDefinedVersion;
+        header.bytes[7] = (byte) (userDefinedVersion >> 8);
 
         // header, compressed file size, decompressed file size (compressed blob size may be same as final blob size)
-        var HEADER_SIZE_POST_FILL_OFFSET = header.addInt32(null, 0); // header file size - post filled later
-        var COMPRESSED_BLOB_SIZE_POST_FILL_OFFSET = header.addInt32(null, 0); // compressedBlobFileSize - post filled later
-        var FINAL_BLOB_SIZE_POST_FILL_OFFSET = header.addInt32(null, 0); // decompressedBlobFileSize - post filled later
+        header.setInt32Index(8, header.size);
+        header.setCompressedBlobSize(layout.size); // post filled by the caller if compressed
+        if(wide) header.setInt64Index(20, layout.size);
+        else header.setInt32Index(16, (int) layout.size);
+        var index = wide ? HEADER_WIDE_FIXED_SIZE : HEADER_FIXED_SIZE;
 
         // struct encoding hash
-        if(includeStructEncodingVersionHash) {
-            try {
-                MessageDigest digest = MessageDigest.getInstance("SHA-256");
-                byte[] fullHash = digest.digest(structEncoding.getBytes(StandardCharsets.UTF_8));
-                byte[] hash16 = Arrays.copyOf(fullHash, 16);
-                StringBuilder hex = new StringBuilder();
-                for (byte b : hash16) hex.append(String.format("%02x", b));
-                System.out.println("Struct encoding version: " + hex);
-                for (byte b : hash16) header.addInt8(null, b); // or header.addByte(null, b) depending on your API
-            } catch (Exception e) {
-                throw new RuntimeException("Hashing failed", e);
-            }
+        if(includeStructEncodingVersionHash) index = header.put(index, schema.hashBytes());
+
+        // struct encoding, already padded so the offsets that follow are 4-byte aligned
+        if(includeStructEncoding) index = header.put(index, schema.encodingSection());
+
+        // # offsets to store + offsets, or + encoded length + varint deltas between the offsets, zero padded
+        var width = wide ? 8 : 4; // of the count, the encoded length and each offset
+        if(wide) header.setInt64Index(index, layout.relocationCount);
+        else header.setInt32Index(index, layout.relocationCount);
+        if(arena.isCompactingOffsets()) {
+            var end = layout.writeCompactRelocationOffsets(header, index + 2 * width);
+            if(wide) header.setInt64Index(index + width, end - index - 2 * width);
+            else header.setInt32Index(index + width, end - index - 2 * width);
+            index = ViewBufferReader.align(end, 4);
         }
-
-        // struct encoding
-        if (includeStructEncoding) {
-            header.addInt16(null, structEncoding.length()); // length of struct encoding
-            for (var c : structEncoding.getBytes(StandardCharsets.UTF_8)) header.addInt8(null, c);
+        else {
+            layout.writeRelocationOffsets(header, index + width, wide);
+            index += width + width * layout.relocationCount;
         }
 
-        // # offsets to store + offsets
-        header.addInt32(null, locationsWhereBaseShouldBeAdded.size());
-        for(var offset : locationsWhereBaseShouldBeAdded) header.addInt32(null, offset);
-
-        // sanity check
-        if(!header.bytes.stream().filter(x -> x < 0 || x > 255).toList().isEmpty()) throw new IllegalStateException("Invalid header value found");
-
-        // post fill the header, blob, and compressed blob sizes if present
-        header.setInt32Index(HEADER_SIZE_POST_FILL_OFFSET, header.size());
-        header.setInt32Index(FINAL_BLOB_SIZE_POST_FILL_OFFSET, blob.size());
-        if(compressBlob) blob = ViewBuffer.compress(blob);
-        header.setInt32Index(COMPRESSED_BLOB_SIZE_POST_FILL_OFFSET, blob.size());
+        // chunk size + # chunks + compressed chunk sizes - post filled later
+        if(chunked) {
+            header.setInt32Index(index, compression.chunkSize());
+            header.setInt32Index(index + 4, chunkCount);
+        }
+        return header;
+    }
 
-        /*
-            combine the header + blob
-         */
-        ByteBuffer out = ByteBuffer.allocate(header.size() + blob.size()); // write the bytes out
-        header.bytes.forEach(x -> out.put((byte)(x & 255)));
-        blob.bytes.forEach(x -> out.put((byte)(x & 255)));
+    private int headerSize(BlobLayout layout, boolean includeStructEncoding, boolean includeStructEncodingVersionHash,
+                           Compression compression) {
+        var schema = includeStructEncoding || includeStructEncodingVersionHash ? schema(layout) : null;
+        var chunked = compression != null && compression.isChunked();
+        var wide = isWide(layout, compression);
+        var width = wide ? 8 : 4;
+        return (wide ? HEADER_WIDE_FIXED_SIZE : HEADER_FIXED_SIZE)
+                + (includeStructEncodingVersionHash ? schema.hashBytes().length : 0)
+                + (includeStructEncoding ? schema.encodingSection().length : 0)
+                + (arena.isCompactingOffsets()
+                        ? 2 * width + ViewBufferReader.align(layout.compactRelocationOffsetsSize(), 4)
+                        : Math.addExact(width, Math.multiplyExact(width, layout.relocationCount)))
+                + (chunked ? 8 + 4 * ChunkedDeflaterOutputStream.chunkCount(layout.size, compression.chunkSize()) : 0);
+    }
 
-        System.out.println("Header (" + header.size() + " bytes), blob (" + blob.size() + " bytes), total (" + (header.size() + blob.size()) + " bytes)");
+    private int put(int index, byte[] source) {
+        System.arraycopy(source, 0, bytes, index, source.length);
+        return index + source.length;
+    }
 
-        return out.flip();
+    /**
+     * The interned schema of the document rooted at this buffer, see {@link SchemaRegistry}. It covers the structs
+     * the document reaches, by slice or copied in-situ or as array elements, in the order they were created, so
+     * other documents built in the same arena do not affect it.
+     */
+    public SchemaRegistry.Schema schema() {
+        if(arena.schema != null && arena.schemaRoot == this) return arena.schema;
+        return schema(arena.layout(this));
     }
 
-    private static String getStructEncodingString() {
+    private SchemaRegistry.Schema schema(BlobLayout layout) {
+        if(arena.schema != null && arena.schemaRoot == this) return arena.schema; // unchanged since last computed
+        var mark = arena.nextLayoutMark();
+        for(var buffer : layout.buffers) {
+            buffer.layoutMark = mark;
+            for(var e : buffer.embedded) e.layoutMark = mark;
+        }
+
         StringBuilder structEncodingBuilder = new StringBuilder();
         Set<String> seen = new HashSet<>();
+        String previous = null;
 
-        for (var buffer : staticBuffers.values()) {
+        for (var buffer : arena.buffers) {
+            if (buffer.layoutMark != mark) continue; // not part of this document
             var s = buffer.structString;
+            if (s == previous) continue; // instances of one shape share their encoding string
+            previous = s;
             if (s.startsWith(ENCODE_STRUCT) && seen.add(s)) { // add() returns false if already present
                 if (!structEncodingBuilder.isEmpty()) structEncodingBuilder.append(ENCODE_SEPARATOR);
                 structEncodingBuilder.append(s);
             }
         }
-        while(structEncodingBuilder.length() % 4 != 2) structEncodingBuilder.append(" "); // ensure 4-byte alignment - use != 2 since the length is 2-bytes and we're not aligned to 4 bytes at that point
-        var structEncoding = structEncodingBuilder.toString();
-        return structEncoding;
+        arena.schemaRoot = this;
+        return arena.schema = SchemaRegistry.intern(structEncodingBuilder.toString());
+    }
+
+    // fills the chunk table at the end of a header
+    private void setChunkTable(List<Integer> chunkSizes) {
+        var index = size - 4 * chunkSizes.size();
+        for(var chunkSize : chunkSizes) {
+            setInt32Index(index, chunkSize);
+            index += 4;
+        }
     }
 
     private void setInt32Index(int index, int value) {
-        for (int i = 0; i < 4; i++) bytes.set(index + i, (value >> (8 * i)) & 0xFF);
+        bytes[index] = (byte) value;
+        bytes[index + 1] = (byte) (value >> 8);
+        bytes[index + 2] = (byte) (value >> 16);
+        bytes[index + 3] = (byte) (value >> 24);
     }
 
-    int size() { return bytes.size(); }
+    private void setInt64Index(int index, long value) { BlobLayout.setInt64(bytes, index, value); }
+
+    // sets a header's compressed blob size, returning the width of the field, which is 8 bytes in the wide format
+    private int setCompressedBlobSize(long compressedBlobSize) {
+        if(bytes[4] == HEADER_FATBUFFER_WIDE_VERSION) {
+            setInt64Index(HEADER_COMPRESSED_BLOB_SIZE_INDEX, compressedBlobSize);
+            return 8;
+        }
+        setInt32Index(HEADER_COMPRESSED_BLOB_SIZE_INDEX, (int) compressedBlobSize);
+        return 4;
+    }
+
+    int size() { return size; }
 
     public void writeBuffer(String outFilePath, short userDefinedVersionNumber,
                             boolean includeStructEncoding,
                             boolean includeStructEncodingVersionHash,
-                            boolean compressBlob) {
-        var out = asByteBuffer(userDefinedVersionNumber, includeStructEncoding, includeStructEncodingVersionHash, compressBlob);
+                            boolean compressBlob) throws IOException {
+        writeBuffer(outFilePath, userDefinedVersionNumber, includeStructEncoding, includeStructEncodingVersionHash, compressBlob ? Compression.DEFAULT : null);
+    }
+
+    public void writeBuffer(String outFilePath, short userDefinedVersionNumber,
+                            boolean includeStructEncoding,
+                            boolean includeStructEncodingVersionHash,
+                            Compression compression) throws IOException {
         Path filePath = Path.of(outFilePath);
+        Files.createDirectories(filePath.getParent());
+        try (FileChannel channel = FileChannel.open(
+                filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeTo(channel, userDefinedVersionNumber, includeStructEncoding, includeStructEncodingVersionHash, compression);
+        }
+    }
 
-        try {
-            Files.createDirectories(filePath.getParent());
-            try (FileChannel channel = FileChannel.open(
-                    filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                int totalBytesWritten = 0;
-                while (out.hasRemaining()) {
-                    int bytesWritten = channel.write(out);
-                    if (bytesWritten < 0) throw new IOException("Failed to write data to the file.");
-                    totalBytesWritten += bytesWritten;
-                }
-                System.out.println("File written successfully! Total bytes written: " + totalBytesWritten);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    public static ViewBuffer compress(ViewBuffer buffer) { return compress(buffer, Compression.DEFAULT); }
+
+    /**
+     * Deflates the buffer's bytes as a single zlib stream using the given level and strategy.
+     */
+    public static ViewBuffer compress(ViewBuffer buffer, Compression compression) {
+        var event = ViewBufferMetrics.compressing();
+        var start = ViewBufferMetrics.compressionsEnabled() ? System.nanoTime() : -1;
+        var compressedBytes = compression.deflate(buffer.bytes, 0, buffer.size);
+        if(start >= 0) {
+            ViewBufferMetrics.compressed(new ViewBufferMetrics.Compress(System.nanoTime() - start, buffer.size, compressedBytes.length), event);
         }
+
+        return buffer.arena.byteArray(compressedBytes);
     }
 
-    public static ViewBuffer compress(ViewBuffer buffer) {
-        var data = new byte[buffer.bytes.size()];
-        for (var c1 = 0; c1 < buffer.bytes.size(); c1++) {
-            data[c1] = (byte)(buffer.bytes.get(c1) & 0xFF);
+    // counts the bytes written, and the time spent writing them when the timer is enabled
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final boolean timed;
+        long count = 0;
+        long nanos = 0;
+
+        CountingOutputStream(OutputStream out, ViewBufferMetrics.WriteTimer timer) {
+            super(out);
+            timed = timer != null && timer.enabled();
+        }
+
+        @Override public void write(int b) throws IOException {
+            var start = timed ? System.nanoTime() : 0;
+            out.write(b);
+            if(timed) nanos += System.nanoTime() - start;
+            count++;
+        }
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            var start = timed ? System.nanoTime() : 0;
+            out.write(b, off, len);
+            if(timed) nanos += System.nanoTime() - start;
+            count += len;
         }
-        Deflater deflater = new Deflater();
-        deflater.setInput(data);
-        deflater.finish();
+    }
+
+    // appends to a buffer's bytes, growing it as required
+    private static final class AppendingOutputStream extends OutputStream {
+        private final ViewBuffer target;
 
-        byte[] outBuffer = new byte[1024];
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AppendingOutputStream(ViewBuffer target) { this.target = target; }
 
-        while (!deflater.finished()) {
-            int count = deflater.deflate(outBuffer);
-            outputStream.write(outBuffer, 0, count);
+        @Override public void write(int b) { write(new byte[] { (byte) b }, 0, 1); }
+        @Override public void write(byte[] b, int off, int len) {
+            var index = target.size;
+            target.grow(len);
+            System.arraycopy(b, off, target.bytes, index, len);
         }
+    }
 
-        var compressedBytes = outputStream.toByteArray();
-        System.out.println("Compressed to " + (outputStream.size() / (float)data.length) * 100 + "% of original size");
+    // writes at a byte buffer's position, throwing BufferOverflowException when it is full
+    private static final class ByteBufferOutputStream extends OutputStream {
+        private final ByteBuffer dst;
 
-        return ViewBuffer.byteArray(compressedBytes);
+        ByteBufferOutputStream(ByteBuffer dst) { this.dst = dst; }
+
+        @Override public void write(int b) { dst.put((byte) b); }
+        @Override public void write(byte[] b, int off, int len) { dst.put(b, off, len); }
+    }
+
+    // a non-seekable channel over an output stream, so the stream is never mistaken for a file channel
+    private record StreamChannel(OutputStream out) implements WritableByteChannel {
+        @Override public int write(ByteBuffer src) throws IOException {
+            var length = src.remaining();
+            if(src.hasArray()) {
+                out.write(src.array(), src.arrayOffset() + src.position(), length);
+                src.position(src.limit());
+            }
+            else {
+                var bytes = new byte[length];
+                src.get(bytes);
+                out.write(bytes);
+            }
+            return length;
+        }
+        @Override public boolean isOpen() { return true; }
+        @Override public void close() {}
     }
 }
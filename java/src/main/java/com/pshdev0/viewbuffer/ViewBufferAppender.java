@@ -0,0 +1,254 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.pshdev0.viewbuffer.ViewBuffer.*;
+
+/**
+ * Appends structs to an array slice of the root struct of an existing, uncompressed ViewBuffer file, in place.
+ * <p>
+ * Each append writes only the new item (into the array) and the buffers it references (at the end of the blob), then
+ * patches the offset table, blob sizes and the slice length with positional writes. The array itself cannot grow
+ * into the data that follows it, so the first append moves it to the end of the blob with spare capacity, and it is
+ * moved again with double the capacity whenever that runs out. Likewise the offset table is given spare capacity
+ * in the header (the blob starts at the header size, so readers skip the unused slots), and the file is rewritten
+ * with double the capacity when it runs out. Both keep the amortized cost of an append proportional to the item.
+ * <p>
+ * Items must use struct encodings already present in the file. An array which another slice of the file shares
+ * cannot be appended to, as the other slice would not see the appended items.
+ * <p>
+ * Appends are not crash-atomic. The header counts are written in one write and the slice length after them, so a
+ * file cut short after an item's bytes are written usually still reads without that item, but a crash while the
+ * array is moved or the offset table is rewritten can leave the file unreadable.
+ */
+public final class ViewBufferAppender implements Closeable {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private FileChannel channel;
+    private final Map<String, ViewBufferReader.StructLayout> layouts;
+    private final Set<String> structEncodings = new HashSet<>(); // "$Name,..." of every struct in the file
+    private final ViewBufferReader.StructLayout elementLayout;
+    private final int stride;
+    private final int slotPosition; // blob position of the array's slice slot in the root struct
+    private final int offsetTableIndex;
+
+    private int headerSize;
+    private int offsetCount;
+    private int offsetCapacity;
+    private int blobSize;
+    private int arrayStart;
+    private int length;
+    private int capacity;
+    private boolean slotRelocated; // false for a null slice slot until the array is first moved
+
+    private ViewBufferAppender(Path path, FileChannel channel, String rootStruct, String sliceField) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        var reader = ViewBufferReader.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        if(reader.isCompressed()) throw new IllegalStateException("Only uncompressed view buffers can be appended to");
+        if(reader.hasCompactOffsets()) throw new IllegalStateException("View buffers with compact offsets cannot be appended to");
+        if(reader.isWide()) throw new IllegalStateException("Wide format view buffers cannot be appended to");
+
+        layouts = reader.layouts();
+        var field = reader.layout(rootStruct).field(sliceField);
+        if(!field.slice()) throw new IllegalStateException("Struct " + rootStruct + " has no slice: " + sliceField);
+        if(!layouts.containsKey(field.type())) throw new IllegalStateException("Slice " + sliceField + " is not a struct array");
+        elementLayout = layouts.get(field.type());
+        stride = elementLayout.size();
+        for(var struct : reader.structEncoding().split(Pattern.quote(ENCODE_SEPARATOR + ENCODE_STRUCT))) {
+            structEncodings.add(struct.startsWith(ENCODE_STRUCT) ? struct : ENCODE_STRUCT + struct);
+        }
+
+        slotPosition = field.offset();
+        arrayStart = reader.blob().getInt(slotPosition);
+        length = capacity = reader.blob().getInt(slotPosition + 8);
+        var arrayEnd = arrayStart + (long) length * stride;
+        for(var slot : reader.relocationOffsets()) {
+            if(slot == slotPosition) slotRelocated = true;
+            else if(length > 0 && reader.blob().getInt(slot) >= arrayStart && reader.blob().getInt(slot) < arrayEnd) {
+                throw new IllegalStateException("Slice " + sliceField + " shares its array with another slice");
+            }
+        }
+        headerSize = reader.headerSize();
+        blobSize = reader.blobSize();
+        offsetTableIndex = reader.offsetTableIndex();
+        offsetCount = reader.offsetCount();
+        offsetCapacity = (headerSize - offsetTableIndex - 4) / 4;
+    }
+
+    /**
+     * Opens a file to append to the given slice field of its root struct.
+     */
+    public static ViewBufferAppender open(Path path, String rootStruct, String sliceField) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new ViewBufferAppender(path, channel, rootStruct, sliceField);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int length() { return length; }
+
+    /**
+     * Appends a struct, with everything it references, to the array. The struct may come from any arena.
+     */
+    public void append(ViewBuffer item) throws IOException {
+        var layout = new BlobLayout(item);
+        checkItem(item, layout);
+        var relocationOffsets = layout.relocationOffsets();
+        // the offsets needed, including the slot's own once a null slice gets its array, are reserved before any write
+        var required = offsetCount + relocationOffsets.length + (slotRelocated ? 0 : 1);
+        if(required > offsetCapacity) growOffsetTable(Math.max(required, Math.max(MIN_CAPACITY, 2 * offsetCapacity)));
+        if(length == capacity) moveArray(Math.max(MIN_CAPACITY, 2 * capacity));
+
+        // the item goes in the array and what it references goes at the end of the blob
+        var mini = item.arena.blobScratch();
+        layout.copyTo(mini);
+        var itemPosition = arrayStart + length * stride;
+        var referencedPosition = ViewBufferReader.align(blobSize, 8);
+        var offsets = ByteBuffer.allocate(4 * relocationOffsets.length).order(ByteOrder.LITTLE_ENDIAN);
+        for(var offset : relocationOffsets) {
+            var target = ByteBuffer.wrap(mini.bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(offset);
+            BlobLayout.setInt32(mini.bytes, offset, rebase(target, item.size, itemPosition, referencedPosition));
+            offsets.putInt(rebase(offset, item.size, itemPosition, referencedPosition));
+        }
+
+        write(headerSize + itemPosition, ByteBuffer.wrap(mini.bytes, 0, item.size));
+        if(mini.size > item.size) {
+            write(headerSize + referencedPosition, ByteBuffer.wrap(mini.bytes, item.size, mini.size - item.size));
+            blobSize = referencedPosition + mini.size - item.size;
+        }
+        write(offsetTableIndex + 4 + 4L * offsetCount, offsets.flip());
+        offsetCount += relocationOffsets.length;
+        length++;
+        writeCounts();
+    }
+
+    // maps a position in the item's own blob to its position in the file's blob
+    private static int rebase(int position, int itemSize, int itemPosition, int referencedPosition) {
+        return position < itemSize ? itemPosition + position : referencedPosition + position - itemSize;
+    }
+
+    private void checkItem(ViewBuffer item, BlobLayout layout) {
+        if(item.type != Type.STRUCT || !structName(item).equals(ENCODE_STRUCT + elementLayout.name())
+                || !structEncodings.contains(item.structString)) {
+            throw new IllegalStateException("Item does not match the file's " + elementLayout.name() + " struct encoding");
+        }
+        for(var buffer : layout.buffers) {
+            var referenced = buffer.structString;
+            var known = buffer.type == Type.STRUCT ? !referenced.startsWith(ENCODE_STRUCT) || structEncodings.contains(referenced)
+                    : ViewBufferReader.primitiveSize(referenced) > 0 || layouts.containsKey(referenced);
+            if(!known) throw new IllegalStateException("Item references a struct the file does not know: " + referenced);
+        }
+    }
+
+    // moves the array to the end of the blob with room for the given number of items
+    private void moveArray(int newCapacity) throws IOException {
+        var newStart = ViewBufferReader.align(blobSize, Math.max(elementLayout.alignment(), 8));
+        var arrayBytes = (long) length * stride;
+        copy(headerSize + (long) arrayStart, headerSize + (long) newStart, arrayBytes);
+
+        // slots inside the moved items move with them
+        var table = ByteBuffer.allocate(4 * offsetCount).order(ByteOrder.LITTLE_ENDIAN);
+        read(offsetTableIndex + 4, table);
+        table.flip();
+        for(var i = 0; i < offsetCount; i++) {
+            var offset = table.getInt(4 * i);
+            if(offset >= arrayStart && offset < arrayStart + arrayBytes) table.putInt(4 * i, offset + newStart - arrayStart);
+        }
+        write(offsetTableIndex + 4, table);
+
+        // a null slice slot held no pointer, so it was not in the table until now
+        if(!slotRelocated) {
+            write(offsetTableIndex + 4 + 4L * offsetCount, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, slotPosition));
+            offsetCount++;
+            slotRelocated = true;
+        }
+
+        // the slot itself is patched by writeCounts(), once the blob reaches the moved array
+        arrayStart = newStart;
+        capacity = newCapacity;
+        blobSize = Math.toIntExact(newStart + (long) newCapacity * stride);
+    }
+
+    // rewrites the file with room for the given number of offsets in the header, shifting the blob along. The file is
+    // replaced in one move, and left as it was if anything fails before then
+    private void growOffsetTable(int newCapacity) throws IOException {
+        var newHeaderSize = offsetTableIndex + 4 + 4 * newCapacity;
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        var moved = false;
+        try {
+            try (var out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var header = ByteBuffer.allocate(newHeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+                read(0, header.limit(offsetTableIndex + 4 + 4 * offsetCount));
+                header.putInt(8, newHeaderSize).clear();
+                while(header.hasRemaining()) out.write(header);
+                for(long position = 0; position < blobSize; ) {
+                    position += channel.transferTo(headerSize + position, blobSize - position, out);
+                }
+                out.force(true);
+            }
+            channel.close();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if(!moved) Files.deleteIfExists(temp);
+            if(!channel.isOpen()) channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        headerSize = newHeaderSize;
+        offsetCapacity = newCapacity;
+    }
+
+    // patches the blob sizes and offset count in one write, then the slice, extending the file to the blob size first
+    private void writeCounts() throws IOException {
+        if(channel.size() < headerSize + (long) blobSize) write(headerSize + (long) blobSize - 1, ByteBuffer.allocate(1));
+        var counts = ByteBuffer.allocate(offsetTableIndex + 4 - HEADER_COMPRESSED_BLOB_SIZE_INDEX).order(ByteOrder.LITTLE_ENDIAN);
+        read(HEADER_COMPRESSED_BLOB_SIZE_INDEX, counts); // the encoding hash and encoding between them are kept
+        counts.putInt(0, blobSize).putInt(4, blobSize).putInt(counts.capacity() - 4, offsetCount).clear();
+        write(HEADER_COMPRESSED_BLOB_SIZE_INDEX, counts);
+        var slot = ByteBuffer.allocate(ViewBufferReader.SLICE_SIZE).order(ByteOrder.LITTLE_ENDIAN).putLong(0, arrayStart).putLong(8, length);
+        write(headerSize + slotPosition, slot);
+    }
+
+    private void copy(long from, long to, long count) throws IOException {
+        var buffer = ByteBuffer.allocate((int) Math.min(count, COPY_BUFFER_SIZE));
+        for(long done = 0; done < count; ) {
+            var n = (int) Math.min(buffer.capacity(), count - done);
+            read(from + done, buffer.clear().limit(n));
+            write(to + done, buffer.flip());
+            done += n;
+        }
+    }
+
+    private void read(long position, ByteBuffer dst) throws IOException {
+        var start = dst.position();
+        while(dst.hasRemaining()) {
+            if(channel.read(dst, position + dst.position() - start) < 0) throw new IllegalStateException("Truncated view buffer");
+        }
+    }
+
+    private void write(long position, ByteBuffer src) throws IOException {
+        var start = src.position();
+        while(src.hasRemaining()) channel.write(src, position + src.position() - start);
+    }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+}
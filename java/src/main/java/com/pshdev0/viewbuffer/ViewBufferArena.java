@@ -0,0 +1,309 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.OutputStream;
+import java.nio.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static com.pshdev0.viewbuffer.ViewBuffer.*;
+
+/**
+ * Owns the buffers of the documents built through it.
+ * <p>
+ * An arena is not thread-safe, but arenas are fully independent, so each thread building documents concurrently
+ * should use its own. The deprecated static {@link ViewBuffer} factories use a per-thread default arena, see
+ * {@link #current()}. Calling {@link #reset()} recycles every buffer (and its backing array) for the next document.
+ */
+public class ViewBufferArena {
+
+    private static final ThreadLocal<ViewBufferArena> DEFAULT = ThreadLocal.withInitial(() -> new ViewBufferArena().scopedToOneDocument());
+    private static final int MIN_SEGMENT_LENGTH = 1024;
+
+    final ArrayList<ViewBuffer> buffers = new ArrayList<>(); // live buffers in creation order
+    private final ArrayDeque<ViewBuffer> free = new ArrayDeque<>();
+    SchemaRegistry.Schema schema; // cached by ViewBuffer.schema(), cleared whenever an encoding changes
+    ViewBuffer schemaRoot; // the root the cached schema was computed for
+    private long layoutMarks = 0;
+    private final BlobLayout layout = new BlobLayout();
+    final ViewBufferMetrics.WriteTimer writeTimer = new ViewBufferMetrics.WriteTimer();
+    private boolean deduplicating = false;
+    private boolean compactingOffsets = false;
+    private boolean wideFormat = false;
+    private boolean scoped = false; // a per-thread default arena, retired once a document built in it is written
+
+    /**
+     * The calling thread's default arena, used by the deprecated static {@link ViewBuffer} factories. It is scoped to
+     * one document: once a document built in it is written, the thread lets go of it and the next static factory
+     * call starts a fresh arena. The written document's buffers stay valid, so it may be written again, but they
+     * cannot be combined with buffers built after the write.
+     */
+    public static ViewBufferArena current() { return DEFAULT.get(); }
+
+    private ViewBufferArena scopedToOneDocument() {
+        scoped = true;
+        return this;
+    }
+
+    // called after every write of a document from this arena
+    void written() {
+        if(!scoped) return;
+        scoped = false;
+        if(DEFAULT.get() == this) DEFAULT.remove(); // never another thread's, as arenas are not shared
+    }
+
+    /**
+     * Whether strings, primitive arrays and other buffers without slices are stored once per distinct contents in the
+     * blobs written from this arena, with every slice to them pointing at that one copy. Off by default, since each
+     * such buffer is hashed on every write.
+     */
+    public ViewBufferArena setDeduplicating(boolean deduplicating) {
+        this.deduplicating = deduplicating;
+        return this;
+    }
+    public boolean isDeduplicating() { return deduplicating; }
+
+    /**
+     * Whether documents written from this arena store their relocation offsets as varint deltas (header flag bit 5)
+     * rather than 4 bytes each, typically a quarter of the size. Off by default, as older readers reject the flag.
+     */
+    public ViewBufferArena setCompactingOffsets(boolean compactingOffsets) {
+        this.compactingOffsets = compactingOffsets;
+        return this;
+    }
+    public boolean isCompactingOffsets() { return compactingOffsets; }
+
+    /**
+     * Whether documents written from this arena always use the wide format (version 2), with 8-byte blob sizes,
+     * offset count and offsets. Documents whose blob might exceed 2 GB use it regardless. Off by default, as older
+     * readers reject version 2.
+     */
+    public ViewBufferArena setWideFormat(boolean wideFormat) {
+        this.wideFormat = wideFormat;
+        return this;
+    }
+    public boolean isWideFormat() { return wideFormat; }
+
+    public ViewBuffer arrayOf(String id) { return allocate(id, Type.ARRAY); }
+
+    /**
+     * Creates one element of a {@link #parallelArrayOf} array. Called concurrently, so the element, and everything
+     * it references, must be built in the given arena only.
+     */
+    @FunctionalInterface
+    public interface ElementFactory {
+        ViewBuffer create(ViewBufferArena arena, int index);
+    }
+
+    /**
+     * An array of count elements built on the common fork-join pool. Runs of consecutive elements are built into
+     * segments, each in its own arena (sharing this arena's recycled buffers) and checking its own elements'
+     * alignment. This arena then adopts every segment arena's buffers, and the first segment becomes the array, with
+     * each later one appended in order with a single copy. The result is the same as adding every element in turn.
+     * <p>
+     * The emptied segments stay in this arena until it is reset, so that after a reset each segment is handed the
+     * same recycled buffers as last time.
+     */
+    public ViewBuffer parallelArrayOf(String id, int count, ElementFactory factory) {
+        var segmentCount = Math.max(1, Math.min(count / MIN_SEGMENT_LENGTH, 4 * ForkJoinPool.getCommonPoolParallelism()));
+        var segmentArenas = new ViewBufferArena[segmentCount];
+        var share = free.size() / segmentCount;
+        for(var s = 0; s < segmentCount; s++) {
+            segmentArenas[s] = new ViewBufferArena();
+            for(var i = 0; i < share; i++) segmentArenas[s].recycle(free.poll());
+        }
+        var segments = IntStream.range(0, segmentCount).parallel().mapToObj(s -> {
+            var segmentArena = segmentArenas[s];
+            var segment = segmentArena.arrayOf(id);
+            var end = (int) ((long) count * (s + 1) / segmentCount);
+            for(var i = (int) ((long) count * s / segmentCount); i < end; i++) segment.addArrayItem(factory.create(segmentArena, i));
+            return segment;
+        }).toList();
+
+        var array = segments.get(0);
+        adopt(array.arena);
+        for(var segment : segments.subList(1, segmentCount)) {
+            adopt(segment.arena);
+            array.addArrayItems(segment);
+            segment.clear();
+        }
+        return array;
+    }
+
+    // takes ownership of another arena's buffers, in creation order, and of its recycled buffers
+    private void adopt(ViewBufferArena other) {
+        for(var buffer : other.buffers) {
+            buffer.arena = this;
+            buffers.add(buffer);
+        }
+        other.buffers.clear();
+        while(!other.free.isEmpty()) recycle(other.free.poll());
+        encodingChanged();
+    }
+
+    private void recycle(ViewBuffer buffer) {
+        buffer.arena = this;
+        free.add(buffer);
+    }
+    public ViewBuffer struct(String id) { return allocate(id != null ? ENCODE_STRUCT + id : null, Type.STRUCT); }
+    /**
+     * An array which only accepts structs of the given shape.
+     */
+    public ViewBuffer shapedArray(StructShape elementShape) {
+        var buffer = arrayOf(elementShape.name);
+        buffer.shape = elementShape;
+        return buffer;
+    }
+
+    /**
+     * A struct with every field of the given shape already in place, zeroed and ready to be set.
+     */
+    public ViewBuffer shaped(StructShape structShape) {
+        var buffer = allocate(structShape.encoding, Type.STRUCT);
+        buffer.shape = structShape;
+        buffer.grow(structShape.fieldsSize);
+        buffer.maxAlignment = structShape.alignment;
+        return buffer;
+    }
+    public ViewBuffer string(String stringBufferContents) {
+        var bytesToAdd = stringBufferContents.getBytes();
+        var buffer = buildArray(ENCODE_STRING, bytesToAdd.length, 1);
+        System.arraycopy(bytesToAdd, 0, buffer.bytes, 0, bytesToAdd.length);
+        return buffer;
+    }
+    public ViewBuffer byteArray(byte... bytesToAdd) {
+        var buffer = buildArray(ENCODE_INT8, bytesToAdd.length, 1);
+        System.arraycopy(bytesToAdd, 0, buffer.bytes, 0, bytesToAdd.length);
+        return buffer;
+    }
+    public ViewBuffer shortArray(short... shortsToAdd) throws IllegalStateException {
+        var buffer = buildArray(ENCODE_INT16, shortsToAdd.length, 2);
+        view(buffer).asShortBuffer().put(shortsToAdd);
+        return buffer;
+    }
+    public ViewBuffer intArray(int... intsToAdd) {
+        var buffer = buildArray(ENCODE_INT32, intsToAdd.length, 4);
+        view(buffer).asIntBuffer().put(intsToAdd);
+        return buffer;
+    }
+    public ViewBuffer longArray(long... longsToAdd) {
+        var buffer = buildArray(ENCODE_INT64, longsToAdd.length, 8);
+        view(buffer).asLongBuffer().put(longsToAdd);
+        return buffer;
+    }
+    public ViewBuffer floatArray(float... floatsToAdd) {
+        var buffer = buildArray(ENCODE_FLOAT32, floatsToAdd.length, 4);
+        view(buffer).asFloatBuffer().put(floatsToAdd);
+        return buffer;
+    }
+    public ViewBuffer doubleArray(double... doublesToAdd) {
+        var buffer = buildArray(ENCODE_FLOAT64, doublesToAdd.length, 8);
+        view(buffer).asDoubleBuffer().put(doublesToAdd);
+        return buffer;
+    }
+
+    /*
+        the NIO buffer variants copy the source's remaining elements without moving its position
+     */
+
+    public ViewBuffer byteArray(ByteBuffer bytesToAdd) {
+        var buffer = buildArray(ENCODE_INT8, bytesToAdd.remaining(), 1);
+        bytesToAdd.get(bytesToAdd.position(), buffer.bytes, 0, buffer.size);
+        return buffer;
+    }
+    public ViewBuffer shortArray(ShortBuffer shortsToAdd) {
+        var buffer = buildArray(ENCODE_INT16, shortsToAdd.remaining(), 2);
+        view(buffer).asShortBuffer().put(shortsToAdd.duplicate());
+        return buffer;
+    }
+    public ViewBuffer intArray(IntBuffer intsToAdd) {
+        var buffer = buildArray(ENCODE_INT32, intsToAdd.remaining(), 4);
+        view(buffer).asIntBuffer().put(intsToAdd.duplicate());
+        return buffer;
+    }
+    public ViewBuffer longArray(LongBuffer longsToAdd) {
+        var buffer = buildArray(ENCODE_INT64, longsToAdd.remaining(), 8);
+        view(buffer).asLongBuffer().put(longsToAdd.duplicate());
+        return buffer;
+    }
+    public ViewBuffer floatArray(FloatBuffer floatsToAdd) {
+        var buffer = buildArray(ENCODE_FLOAT32, floatsToAdd.remaining(), 4);
+        view(buffer).asFloatBuffer().put(floatsToAdd.duplicate());
+        return buffer;
+    }
+    public ViewBuffer doubleArray(DoubleBuffer doublesToAdd) {
+        var buffer = buildArray(ENCODE_FLOAT64, doublesToAdd.remaining(), 8);
+        view(buffer).asDoubleBuffer().put(doublesToAdd.duplicate());
+        return buffer;
+    }
+
+    // a locked array of count zeroed elements, ready to be filled in one bulk copy
+    private ViewBuffer buildArray(String id, int count, int alignment) {
+        var buffer = struct(null);
+        buffer.grow(Math.multiplyExact(count, alignment));
+        buffer.arrayLength = count;
+        buffer.locked = true;
+        buffer.maxAlignment = alignment;
+        buffer.type = Type.ARRAY;
+        buffer.structString = id;
+        encodingChanged();
+        return buffer;
+    }
+
+    private static ByteBuffer view(ViewBuffer buffer) {
+        return ByteBuffer.wrap(buffer.bytes, 0, buffer.size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private ViewBuffer allocate(String id, Type type) {
+        var buffer = free.poll();
+        if(buffer == null) buffer = new ViewBuffer(this);
+        buffer.init(id, type);
+        buffers.add(buffer);
+        encodingChanged();
+        return buffer;
+    }
+
+    // buffers owned by this arena but not tracked, reused by every write for the header and the blob
+    private ViewBuffer headerScratch;
+    private ViewBuffer blobScratch;
+    private ChunkedDeflaterOutputStream chunkedStream; // with its chunk arrays, up to a few per compressing thread
+
+    void encodingChanged() { schema = null; }
+
+    long nextLayoutMark() { return ++layoutMarks; }
+
+    // the layout reused by every write, valid until the next write
+    BlobLayout layout(ViewBuffer root) { return layout.layout(root); }
+
+    ViewBuffer headerScratch() { return headerScratch = reuse(headerScratch, Type.STRUCT); }
+    ViewBuffer blobScratch() { return blobScratch = reuse(blobScratch, Type.ARRAY); }
+
+    ChunkedDeflaterOutputStream chunkedStream(OutputStream out, Compression compression) {
+        if(chunkedStream == null) chunkedStream = new ChunkedDeflaterOutputStream(out, compression);
+        else chunkedStream.reset(out, compression);
+        return chunkedStream;
+    }
+
+    private ViewBuffer reuse(ViewBuffer buffer, Type type) {
+        if(buffer == null) buffer = new ViewBuffer(this);
+        else buffer.clear();
+        buffer.init(null, type);
+        return buffer;
+    }
+
+    /**
+     * Clears every buffer created by this arena and keeps them, with their backing arrays, for reuse.
+     * Buffers obtained before the reset must not be used afterwards.
+     */
+    public void reset() {
+        for(var buffer : buffers) {
+            buffer.clear();
+            free.add(buffer);
+        }
+        buffers.clear();
+        encodingChanged();
+    }
+
+    public int bufferCount() { return buffers.size(); }
+}
@@ -0,0 +1,181 @@
+package com.pshdev0.viewbuffer;
+
+import jdk.jfr.*;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reports every document write and buffer compression to the registered listeners and as JFR events
+ * ({@code com.pshdev0.viewbuffer.Write} and {@code com.pshdev0.viewbuffer.Compress}).
+ * <p>
+ * Nothing is measured, allocated or printed unless a listener is registered or a recording has an event enabled.
+ * Add {@link #STDOUT} to print the sizes and compression ratios as earlier versions always did.
+ */
+public final class ViewBufferMetrics {
+
+    private static final CopyOnWriteArrayList<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final EventType WRITE_EVENT = EventType.getEventType(WriteEvent.class);
+    private static final EventType COMPRESS_EVENT = EventType.getEventType(CompressEvent.class);
+
+    private ViewBufferMetrics() {}
+
+    /**
+     * Receives metrics on the writing thread, so implementations should be quick and thread-safe.
+     */
+    public interface Listener {
+        void written(Write write);
+        default void compressed(Compress compress) {}
+    }
+
+    /**
+     * One document written by {@code asByteBuffer}, {@code writeTo} or {@code writeBuffer}. The phases are disjoint,
+     * but a blob that is compressed as it is linked (chunked, or streamed) counts its linking as compression, and
+     * a blob streamed to a channel counts only the time spent in the channel as I/O.
+     *
+     * @param compressedBlobBytes the blob bytes written, equal to {@code blobBytes} when uncompressed
+     */
+    public record Write(long layoutNanos, long headerNanos, long linkNanos, long compressNanos, long ioNanos,
+                        int headerBytes, long blobBytes, long compressedBlobBytes, int relocationCount, int bufferCount) {
+
+        public long totalNanos() { return layoutNanos + headerNanos + linkNanos + compressNanos + ioNanos; }
+        public long totalBytes() { return headerBytes + compressedBlobBytes; }
+        public double compressionRatio() { return blobBytes == 0 ? 1 : compressedBlobBytes / (double) blobBytes; }
+    }
+
+    /**
+     * One buffer deflated by {@link ViewBuffer#compress(ViewBuffer, Compression)}.
+     */
+    public record Compress(long nanos, int bytes, int compressedBytes) {
+        public double compressionRatio() { return bytes == 0 ? 1 : compressedBytes / (double) bytes; }
+    }
+
+    /**
+     * Prints each write and compression to stdout.
+     */
+    public static final Listener STDOUT = new Listener() {
+        @Override public void written(Write write) {
+            if(write.compressedBlobBytes() != write.blobBytes()) {
+                System.out.println("Compressed to " + write.compressionRatio() * 100 + "% of original size");
+            }
+            System.out.println("Header (" + write.headerBytes() + " bytes), blob (" + write.compressedBlobBytes()
+                    + " bytes), total (" + write.totalBytes() + " bytes)");
+        }
+        @Override public void compressed(Compress compress) {
+            System.out.println("Compressed to " + compress.compressionRatio() * 100 + "% of original size");
+        }
+    };
+
+    public static void addListener(Listener listener) { LISTENERS.add(listener); }
+    public static void removeListener(Listener listener) { LISTENERS.remove(listener); }
+
+    static boolean writesEnabled() { return !LISTENERS.isEmpty() || WRITE_EVENT.isEnabled(); }
+    static boolean compressionsEnabled() { return !LISTENERS.isEmpty() || COMPRESS_EVENT.isEnabled(); }
+
+    // the event, if any, was begun before the write so its start time and duration span it
+    static void written(Write write, WriteEvent event) {
+        for(var listener : LISTENERS) listener.written(write);
+        if(event != null) {
+            event.end();
+            if(!event.shouldCommit()) return;
+            event.layoutNanos = write.layoutNanos();
+            event.headerNanos = write.headerNanos();
+            event.linkNanos = write.linkNanos();
+            event.compressNanos = write.compressNanos();
+            event.ioNanos = write.ioNanos();
+            event.headerBytes = write.headerBytes();
+            event.blobBytes = write.blobBytes();
+            event.compressedBlobBytes = write.compressedBlobBytes();
+            event.compressionRatio = write.compressionRatio();
+            event.relocationCount = write.relocationCount();
+            event.bufferCount = write.bufferCount();
+            event.commit();
+        }
+    }
+
+    /**
+     * The event for a compression about to start, already begun, or null when no recording has it enabled.
+     */
+    static CompressEvent compressing() {
+        if(!COMPRESS_EVENT.isEnabled()) return null;
+        var event = new CompressEvent();
+        event.begin();
+        return event;
+    }
+
+    static void compressed(Compress compress, CompressEvent event) {
+        for(var listener : LISTENERS) listener.compressed(compress);
+        if(event != null) {
+            event.end();
+            if(!event.shouldCommit()) return;
+            event.nanos = compress.nanos();
+            event.bytes = compress.bytes();
+            event.compressedBytes = compress.compressedBytes();
+            event.commit();
+        }
+    }
+
+    /**
+     * Times the phases of one write, measuring nothing when metrics are disabled. Reused by each arena.
+     */
+    static final class WriteTimer {
+        private boolean enabled;
+        private long last;
+        private WriteEvent event; // begun by start() when a recording has writes enabled
+        long layoutNanos, headerNanos, linkNanos, compressNanos, ioNanos;
+
+        WriteTimer start() {
+            enabled = writesEnabled();
+            layoutNanos = headerNanos = linkNanos = compressNanos = ioNanos = 0;
+            event = WRITE_EVENT.isEnabled() ? new WriteEvent() : null;
+            if(event != null) event.begin();
+            last = enabled ? System.nanoTime() : 0;
+            return this;
+        }
+
+        boolean enabled() { return enabled; }
+
+        // the time since the previous lap, or since the start
+        long lap() {
+            if(!enabled) return 0;
+            var now = System.nanoTime();
+            var elapsed = now - last;
+            last = now;
+            return elapsed;
+        }
+
+        void written(BlobLayout layout, int headerBytes, long compressedBlobBytes) {
+            if(!enabled) return;
+            ViewBufferMetrics.written(new Write(layoutNanos, headerNanos, linkNanos, compressNanos, ioNanos, headerBytes,
+                    layout.size, compressedBlobBytes, layout.relocationCount, layout.buffers.size()), event);
+            event = null;
+        }
+    }
+
+    @Name("com.pshdev0.viewbuffer.Write")
+    @Label("ViewBuffer Write")
+    @Category("ViewBuffer")
+    @StackTrace(false)
+    static final class WriteEvent extends Event {
+        @Label("Layout") @Timespan long layoutNanos;
+        @Label("Header") @Timespan long headerNanos;
+        @Label("Link") @Timespan long linkNanos;
+        @Label("Compress") @Timespan long compressNanos;
+        @Label("I/O") @Timespan long ioNanos;
+        @Label("Header Size") @DataAmount int headerBytes;
+        @Label("Blob Size") @DataAmount long blobBytes;
+        @Label("Compressed Blob Size") @DataAmount long compressedBlobBytes;
+        @Label("Compression Ratio") double compressionRatio;
+        @Label("Relocations") int relocationCount;
+        @Label("Buffers") int bufferCount;
+    }
+
+    @Name("com.pshdev0.viewbuffer.Compress")
+    @Label("ViewBuffer Compress")
+    @Category("ViewBuffer")
+    @StackTrace(false)
+    static final class CompressEvent extends Event {
+        @Label("Duration") @Timespan long nanos;
+        @Label("Size") @DataAmount int bytes;
+        @Label("Compressed Size") @DataAmount int compressedBytes;
+    }
+}
@@ -0,0 +1,559 @@
+package com.pshdev0.viewbuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.pshdev0.viewbuffer.ViewBuffer.*;
+
+/**
+ * Read-only view over a ViewBuffer file or buffer.
+ * <p>
+ * Only the header is decoded on open. Structs, slices and strings are views straight over the (memory-mapped)
+ * blob bytes and nothing is copied or decoded until a field is read. Slice pointers are read as blob-relative
+ * offsets so the relocation table never needs to be applied.
+ * <p>
+ * A compressed blob is inflated into a buffer sized from the header, direct when the source is (e.g. a mapped
+ * file). By default it is inflated in full on first use, chunks in parallel. A reader opened for partial inflation
+ * instead inflates only as far as the furthest byte read through its views so far, so reading the start of a large
+ * document does not pay for the rest. Readers may be shared between threads either way.
+ * <p>
+ * Struct layouts come from the document's own struct encoding. A document written with only the encoding hash can
+ * only be read if its schema is in the {@link SchemaRegistry} when the reader is opened.
+ */
+public class ViewBufferReader {
+
+    static final int SLICE_SIZE = 16;
+    static final int KNOWN_FLAGS = HEADER_FLAG_COMPRESS_DATA
+            | HEADER_FLAG_INCLUDE_STRUCT_ENCODING
+            | HEADER_FLAG_INCLUDE_STRUCT_ENCODING_VERSION_HASH
+            | HEADER_FLAG_CHUNKED_COMPRESSION
+            | HEADER_FLAG_COMPACT_OFFSETS;
+
+    private final ByteBuffer source;
+    private final int version;
+    private final int flags;
+    private final short userDefinedVersion;
+    private final int headerSize;
+    private final int compressedBlobSize;
+    private final int blobSize;
+    private final int structEncodingHashIndex;
+    private final String structEncoding;
+    private final int offsetTableIndex;
+    private final int offsetCount;
+    private final int compactOffsetsLength; // the length of the varint deltas, or -1 for 4 or 8-byte offsets
+    private final int chunkSize;
+    private final int[] chunkOffsets; // start of each compressed chunk within the compressed blob, plus the end
+    private final Map<String, StructLayout> layouts;
+    private final boolean partial;
+    private ByteBuffer blob; // allocated on first use when compressed
+    private volatile int inflated; // the number of leading blob bytes ready to read
+    private Inflater inflater; // a single stream's inflater, held between partial inflations
+
+    private ViewBufferReader(ByteBuffer buffer, boolean partial) {
+        source = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if(source.remaining() < HEADER_FIXED_SIZE) throw new IllegalStateException("Buffer too small for a ViewBuffer header");
+
+        if(source.getInt(0) != HEADER_VBUF_MAGIC) throw new IllegalStateException("Incorrect view buffer format");
+        version = source.get(4) & 0xFF;
+        if(version != HEADER_FATBUFFER_VERSION && version != HEADER_FATBUFFER_WIDE_VERSION) {
+            throw new IllegalStateException("Unknown view buffer version: " + version);
+        }
+        if(isWide() && source.remaining() < HEADER_WIDE_FIXED_SIZE) throw new IllegalStateException("Buffer too small for a ViewBuffer header");
+        flags = source.get(5) & 0xFF;
+        if((flags & ~KNOWN_FLAGS) != 0) throw new IllegalStateException("Unsupported view buffer flags: " + flags);
+
+        userDefinedVersion = source.getShort(6);
+        headerSize = source.getInt(8);
+        var compressedSize = isWide() ? source.getLong(12) : source.getInt(12);
+        var decompressedSize = isWide() ? source.getLong(20) : source.getInt(16);
+        if(Math.max(compressedSize, decompressedSize) > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Blob of " + decompressedSize + " bytes is too large to view through a byte buffer");
+        }
+        compressedBlobSize = (int) compressedSize;
+        blobSize = (int) decompressedSize;
+        var index = isWide() ? HEADER_WIDE_FIXED_SIZE : HEADER_FIXED_SIZE;
+        if(headerSize < index || compressedBlobSize < 0 || blobSize < 0) throw new IllegalStateException("Corrupt view buffer header sizes");
+        if((long) headerSize + compressedBlobSize > source.remaining()) throw new IllegalStateException("Truncated view buffer");
+
+        structEncodingHashIndex = (flags & HEADER_FLAG_INCLUDE_STRUCT_ENCODING_VERSION_HASH) != 0 ? inHeader(index, 16, "encoding hash") : -1;
+        if(structEncodingHashIndex >= 0) index += 16;
+
+        if((flags & HEADER_FLAG_INCLUDE_STRUCT_ENCODING) != 0) {
+            var length = source.getShort(inHeader(index, 2, "struct encoding")) & 0xFFFF;
+            inHeader(index + 2, length, "struct encoding");
+            var encoding = new byte[length];
+            source.get(index + 2, encoding);
+            structEncoding = new String(encoding, StandardCharsets.UTF_8).trim();
+            index += 2 + length;
+        }
+        else structEncoding = "";
+
+        // the count, and the encoded length or each offset, are 8 bytes wide in version 2, but fit an int in any blob
+        // which fits a byte buffer
+        index = offsetTableIndex = align(index, 4);
+        var width = offsetWidth();
+        offsetCount = headerInt(index, width, "offset count");
+        if((flags & HEADER_FLAG_COMPACT_OFFSETS) != 0) {
+            compactOffsetsLength = headerInt(index + width, width, "compact offsets length");
+            index = align(inHeader(index + 2 * width, compactOffsetsLength, "compact offset table") + compactOffsetsLength, 4);
+        }
+        else {
+            compactOffsetsLength = -1;
+            index = inHeader(index + width, (long) width * offsetCount, "offset table") + width * offsetCount;
+        }
+
+        if((flags & HEADER_FLAG_CHUNKED_COMPRESSION) != 0) {
+            if(!isCompressed()) throw new IllegalStateException("Chunked compression flag without compression flag");
+            chunkSize = headerInt(index, 4, "chunk size");
+            var chunkCount = headerInt(index + 4, 4, "chunk count");
+            index += 8;
+            inHeader(index, 4L * chunkCount, "chunk table");
+            if(chunkSize == 0 || chunkCount != ChunkedDeflaterOutputStream.chunkCount(blobSize, chunkSize)) {
+                throw new IllegalStateException("Chunk table does not match the blob size");
+            }
+            chunkOffsets = new int[chunkCount + 1];
+            for(var c1 = 0; c1 < chunkCount; c1++) {
+                var length = source.getInt(index + 4 * c1);
+                if(length < 0 || chunkOffsets[c1] + (long) length > compressedBlobSize) throw new IllegalStateException("Chunk table does not match the compressed blob size");
+                chunkOffsets[c1 + 1] = chunkOffsets[c1] + length;
+            }
+            if(chunkOffsets[chunkCount] != compressedBlobSize) throw new IllegalStateException("Chunk table does not match the compressed blob size");
+        }
+        else {
+            chunkSize = 0;
+            chunkOffsets = null;
+        }
+        // documents of one schema share their parsed layouts. A document carrying its encoding is always read by it,
+        // whatever the registry holds, while a hash alone is only enough for a schema registered when opened
+        if(!structEncoding.isEmpty()) layouts = SchemaRegistry.intern(structEncoding).layouts();
+        else {
+            var schema = structEncodingHashIndex >= 0 ? SchemaRegistry.lookup(structEncodingHash()) : null;
+            layouts = schema != null ? schema.layouts() : Map.of();
+        }
+
+        this.partial = partial;
+        if(!isCompressed()) {
+            blob = source.slice(headerSize, blobSize).order(ByteOrder.LITTLE_ENDIAN);
+            inflated = blobSize;
+        }
+    }
+
+    // the index, once the given number of bytes from it are known to lie within the header
+    private int inHeader(int index, long length, String what) {
+        if(index < 0 || length < 0 || index + length > headerSize) {
+            throw new IllegalStateException("Corrupt view buffer header: " + what + " at " + index + " overruns the header of " + headerSize + " bytes");
+        }
+        return index;
+    }
+
+    // a non-negative 4 or 8-byte header value which must fit an int
+    private int headerInt(int index, int width, String what) {
+        var value = width == 8 ? source.getLong(inHeader(index, 8, what)) : source.getInt(inHeader(index, 4, what));
+        if(value < 0 || value > Integer.MAX_VALUE) throw new IllegalStateException("Corrupt view buffer header: " + what + " of " + value);
+        return (int) value;
+    }
+
+    public static ViewBufferReader open(Path path) throws IOException { return open(path, false); }
+
+    /**
+     * @param partial inflate a compressed blob only as far as it has been read, see {@link ViewBufferReader}
+     */
+    public static ViewBufferReader open(Path path, boolean partial) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ViewBufferReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), partial);
+        }
+    }
+
+    public static ViewBufferReader of(ByteBuffer buffer) { return of(buffer, false); }
+
+    /**
+     * @param partial inflate a compressed blob only as far as it has been read, see {@link ViewBufferReader}
+     */
+    public static ViewBufferReader of(ByteBuffer buffer, boolean partial) { return new ViewBufferReader(buffer, partial); }
+
+    public int version() { return version; }
+    /**
+     * Whether the header is in the wide format (version 2), with 8-byte blob sizes, offset count and offsets.
+     */
+    public boolean isWide() { return version == HEADER_FATBUFFER_WIDE_VERSION; }
+    public int flags() { return flags; }
+    public boolean isCompressed() { return (flags & HEADER_FLAG_COMPRESS_DATA) != 0; }
+    public boolean isChunked() { return chunkOffsets != null; }
+    public int chunkSize() { return chunkSize; }
+    public int chunkCount() { return chunkOffsets == null ? 0 : chunkOffsets.length - 1; }
+    public short userDefinedVersion() { return userDefinedVersion; }
+    public int headerSize() { return headerSize; }
+    public int compressedBlobSize() { return compressedBlobSize; }
+    public int blobSize() { return blobSize; }
+    public int offsetCount() { return offsetCount; }
+    int offsetTableIndex() { return offsetTableIndex; } // header position of the offset count, followed by the offsets
+    private int offsetWidth() { return isWide() ? 8 : 4; }
+    public boolean hasCompactOffsets() { return compactOffsetsLength >= 0; }
+
+    /**
+     * The blob positions of every slice slot, decoded in one pass from either offset table format.
+     */
+    public int[] relocationOffsets() {
+        var offsets = new int[offsetCount];
+        var width = offsetWidth();
+        if(compactOffsetsLength < 0) {
+            for(var c1 = 0; c1 < offsetCount; c1++) {
+                var index = offsetTableIndex + width + width * c1;
+                offsets[c1] = isWide() ? (int) source.getLong(index) : source.getInt(index);
+            }
+            return offsets;
+        }
+        var index = offsetTableIndex + 2 * width;
+        var end = index + compactOffsetsLength;
+        var offset = 0;
+        for(var c1 = 0; c1 < offsetCount; c1++) {
+            var delta = 0;
+            for(var shift = 0; ; shift += 7) {
+                if(index == end || shift > 28) throw new IllegalStateException("Corrupt compact offset table");
+                var b = source.get(index++);
+                delta |= (b & 0x7F) << shift;
+                if(b >= 0) break;
+            }
+            offsets[c1] = offset += delta;
+        }
+        return offsets;
+    }
+    public String structEncoding() { return structEncoding; }
+    public Map<String, StructLayout> layouts() { return layouts; }
+
+    public byte[] structEncodingHash() {
+        if(structEncodingHashIndex < 0) return null;
+        var hash = new byte[16];
+        source.get(structEncodingHashIndex, hash);
+        return hash;
+    }
+
+    public StructLayout layout(String structName) {
+        var layout = layouts.get(structName);
+        if(layout == null && layouts.isEmpty() && structEncodingHashIndex >= 0) {
+            throw new IllegalStateException("Unknown struct: " + structName + " - the document carries only its encoding hash, which matches no registered schema, see SchemaRegistry.intern");
+        }
+        if(layout == null) throw new IllegalStateException("Unknown struct: " + structName);
+        return layout;
+    }
+
+    /**
+     * The root struct at the start of the blob, viewed as the named struct from the struct encoding.
+     */
+    public Struct root(String structName) {
+        var layout = layout(structName);
+        readable(0, partial ? layout.size : blobSize);
+        return new Struct(blob, layout, 0);
+    }
+
+    /**
+     * The blob bytes, inflated in full if compressed, otherwise a view over the source.
+     */
+    public ByteBuffer blob() {
+        readable(0, blobSize);
+        return blob;
+    }
+
+    // the number of leading blob bytes inflated so far
+    int inflated() { return inflated; }
+
+    // the index, once the blob has been inflated past the given number of bytes from it
+    private int readable(int index, int length) {
+        if(index + length > inflated || blob == null) inflateTo(index + length);
+        return index;
+    }
+
+    /*
+        a single stream is inflated in steps, keeping its inflater between them, and chunks are inflated in
+        parallel up to the one containing the end
+     */
+    private synchronized void inflateTo(int end) {
+        if(blob == null) {
+            blob = (source.isDirect() ? ByteBuffer.allocateDirect(blobSize) : ByteBuffer.allocate(blobSize)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        end = Math.min(end, blobSize);
+        var done = inflated;
+        if(end <= done) return; // inflated by another thread in the meantime
+        var raw = source.slice(headerSize, compressedBlobSize);
+        if(isChunked()) {
+            var firstChunk = done / chunkSize;
+            var lastChunk = partial ? (end - 1) / chunkSize : chunkCount() - 1;
+            IntStream.rangeClosed(firstChunk, lastChunk).parallel().forEach(c1 -> {
+                var start = c1 * chunkSize;
+                var inflater = Compression.inflater();
+                try {
+                    inflater.setInput(raw.slice(chunkOffsets[c1], chunkOffsets[c1 + 1] - chunkOffsets[c1]));
+                    inflate(inflater, blob.slice(start, Math.min(chunkSize, blobSize - start)));
+                } finally {
+                    Compression.release(inflater);
+                }
+            });
+            inflated = Math.min(blobSize, (lastChunk + 1) * chunkSize);
+        }
+        else {
+            if(inflater == null) {
+                inflater = Compression.inflater();
+                inflater.setInput(raw);
+            }
+            var target = partial ? Math.min(blobSize, Math.max(end, done + STREAM_BUFFER_SIZE)) : blobSize;
+            try {
+                inflate(inflater, blob.slice(done, target - done));
+            } catch (RuntimeException e) {
+                Compression.release(inflater);
+                inflater = null;
+                throw e;
+            }
+            inflated = target;
+            if(target == blobSize) {
+                Compression.release(inflater);
+                inflater = null;
+            }
+        }
+    }
+
+    // inflates from the inflater's input until the output buffer is full
+    private static void inflate(Inflater inflater, ByteBuffer out) {
+        try {
+            while(out.hasRemaining() && !inflater.finished()) {
+                if(inflater.inflate(out) == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed blob", e);
+        }
+        if(out.hasRemaining()) throw new IllegalStateException("Compressed blob inflated to fewer bytes than expected");
+    }
+
+    static int align(int index, int alignment) {
+        var remainder = index % alignment;
+        return remainder == 0 ? index : index + alignment - remainder;
+    }
+
+    /*
+        STRUCT ENCODING
+     */
+
+    public record Field(String name, String type, boolean slice, boolean inSituStruct, int offset) {}
+
+    public static final class StructLayout {
+        final String name;
+        final LinkedHashMap<String, Field> fields = new LinkedHashMap<>();
+        int size;
+        int alignment = 1;
+
+        StructLayout(String name) { this.name = name; }
+
+        public String name() { return name; }
+        public Collection<Field> fields() { return fields.values(); }
+        public int size() { return size; }
+        public int alignment() { return alignment; }
+
+        public Field field(String fieldName) {
+            var field = fields.get(fieldName);
+            if(field == null) throw new IllegalStateException("Struct " + name + " has no field: " + fieldName);
+            return field;
+        }
+    }
+
+    // null pointer slices may be typed with the generated D type name instead of an encoding
+    static int primitiveSize(String type) {
+        return switch(type) {
+            case ENCODE_INT8, ENCODE_BOOL, ENCODE_STRING, "ubyte", "bool", "char" -> 1;
+            case ENCODE_INT16, "short" -> 2;
+            case ENCODE_INT32, ENCODE_FLOAT32, "int", "float" -> 4;
+            case ENCODE_INT64, ENCODE_FLOAT64, ENCODE_BYTE_POINTER_32, "long", "double" -> 8;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Parses "$Name,i4field,*slice[type,^inner$Struct,..." into struct layouts using the same field alignment
+     * rules as the writer (slices are 16 bytes at 8-byte alignment, in-situ structs at their own alignment). A
+     * struct's size is padded to its alignment, as the writer pads in-situ structs and array elements.
+     */
+    static Map<String, StructLayout> parseStructEncoding(String structEncoding) {
+        Map<String, List<String>> tokensByStruct = new LinkedHashMap<>();
+        List<String> current = null;
+        for(var t : structEncoding.split(ENCODE_SEPARATOR)) {
+            t = t.trim();
+            if(t.isEmpty()) continue;
+            if(t.startsWith(ENCODE_STRUCT)) tokensByStruct.put(t.substring(1), current = new ArrayList<>());
+            else if(current == null) throw new IllegalStateException("Field outside a struct: " + t);
+            else current.add(t);
+        }
+
+        Map<String, StructLayout> layouts = new LinkedHashMap<>();
+        for(var name : tokensByStruct.keySet()) buildLayout(name, tokensByStruct, layouts, new HashSet<>());
+        return Collections.unmodifiableMap(layouts);
+    }
+
+    private static StructLayout buildLayout(String name, Map<String, List<String>> tokensByStruct,
+                                            Map<String, StructLayout> layouts, Set<String> inProgress) {
+        var existing = layouts.get(name);
+        if(existing != null) return existing;
+        var tokens = tokensByStruct.get(name);
+        if(tokens == null) throw new IllegalStateException("Unknown struct: " + name);
+        if(!inProgress.add(name)) throw new IllegalStateException("Recursive in-situ struct: " + name);
+
+        var layout = new StructLayout(name);
+        var offset = 0;
+        for(var t : tokens) {
+            Field field;
+            int size, alignment;
+            switch(t.substring(0, 1)) {
+                case ENCODE_SLICE -> {
+                    var index = t.indexOf(ENCODE_ARRAY);
+                    if (index == -1) throw new IllegalStateException("Malformed token: " + t);
+                    size = SLICE_SIZE;
+                    alignment = 8;
+                    offset = align(offset, alignment);
+                    field = new Field(t.substring(1, index), t.substring(index + 1), true, false, offset);
+                }
+                case ENCODE_INSITU_STRUCT -> {
+                    var index = t.indexOf(ENCODE_STRUCT);
+                    if (index == -1) throw new IllegalStateException("Malformed token: " + t);
+                    var inner = buildLayout(t.substring(index + 1), tokensByStruct, layouts, inProgress);
+                    size = inner.size;
+                    alignment = inner.alignment;
+                    offset = align(offset, alignment);
+                    field = new Field(t.substring(1, index), inner.name, false, true, offset);
+                }
+                default -> {
+                    var type = t.substring(0, 2);
+                    size = alignment = primitiveSize(type);
+                    if(size < 0) throw new IllegalStateException("Unknown type in token: " + t);
+                    offset = align(offset, alignment);
+                    field = new Field(t.substring(2), type, false, false, offset);
+                }
+            }
+            layout.fields.put(field.name(), field);
+            layout.alignment = Math.max(layout.alignment, alignment);
+            offset += size;
+        }
+        layout.size = align(offset, layout.alignment);
+
+        inProgress.remove(name);
+        layouts.put(name, layout);
+        return layout;
+    }
+
+    /*
+        VIEWS
+     */
+
+    /**
+     * A struct instance at a fixed offset within the blob.
+     */
+    public final class Struct {
+        final ByteBuffer data;
+        final StructLayout layout;
+        final int offset;
+
+        Struct(ByteBuffer data, StructLayout layout, int offset) {
+            this.data = data;
+            this.layout = layout;
+            this.offset = offset;
+        }
+
+        public StructLayout layout() { return layout; }
+        public int offset() { return offset; }
+
+        private int at(String fieldName, int size) { return readable(offset + layout.field(fieldName).offset(), size); }
+
+        public byte getInt8(String fieldName) { return data.get(at(fieldName, 1)); }
+        public short getInt16(String fieldName) { return data.getShort(at(fieldName, 2)); }
+        public int getInt32(String fieldName) { return data.getInt(at(fieldName, 4)); }
+        public long getInt64(String fieldName) { return data.getLong(at(fieldName, 8)); }
+        public float getFloat32(String fieldName) { return data.getFloat(at(fieldName, 4)); }
+        public double getFloat64(String fieldName) { return data.getDouble(at(fieldName, 8)); }
+        public boolean getBool(String fieldName) { return data.get(at(fieldName, 1)) != 0; }
+        public String getString(String fieldName) { return getSlice(fieldName).getString(); }
+
+        public Struct getStruct(String fieldName) {
+            var field = layout.field(fieldName);
+            if(!field.inSituStruct()) throw new IllegalStateException("Field is not an in-situ struct: " + fieldName);
+            return new Struct(data, ViewBufferReader.this.layout(field.type()), offset + field.offset());
+        }
+
+        public Slice getSlice(String fieldName) {
+            var field = layout.field(fieldName);
+            if(!field.slice()) throw new IllegalStateException("Field is not a slice: " + fieldName);
+            var index = readable(offset + field.offset(), SLICE_SIZE);
+            // blob-relative pointer and length, which must lie within the blob
+            var pointer = data.getLong(index);
+            var length = data.getLong(index + 8);
+            if(pointer < 0 || pointer > blobSize || length < 0 || length > blobSize) {
+                throw new IllegalStateException("Slice " + fieldName + " at " + pointer + " of length " + length + " lies outside the blob");
+            }
+            return new Slice(data, field.type(), (int) pointer, (int) length);
+        }
+    }
+
+    /**
+     * A slice of primitives or structs within the blob.
+     */
+    public final class Slice {
+        final ByteBuffer data;
+        final String type;
+        final int offset;
+        final int length;
+        final StructLayout elementLayout;
+        final int stride;
+
+        Slice(ByteBuffer data, String type, int offset, int length) {
+            this.data = data;
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+            var size = primitiveSize(type);
+            elementLayout = size < 0 && length > 0 ? layout(type) : null;
+            stride = elementLayout != null ? elementLayout.size : Math.max(size, 1);
+            if(offset + (long) length * stride > blobSize) {
+                throw new IllegalStateException("Slice at " + offset + " of " + length + " " + type + " lies outside the blob");
+            }
+        }
+
+        public String type() { return type; }
+        public int length() { return length; }
+        public boolean isEmpty() { return length == 0; }
+
+        private int at(int i) {
+            Objects.checkIndex(i, length);
+            return readable(offset + i * stride, stride);
+        }
+
+        public byte getInt8(int i) { return data.get(at(i)); }
+        public short getInt16(int i) { return data.getShort(at(i)); }
+        public int getInt32(int i) { return data.getInt(at(i)); }
+        public long getInt64(int i) { return data.getLong(at(i)); }
+        public float getFloat32(int i) { return data.getFloat(at(i)); }
+        public double getFloat64(int i) { return data.getDouble(at(i)); }
+        public boolean getBool(int i) { return data.get(at(i)) != 0; }
+
+        public Struct getStruct(int i) {
+            if(elementLayout == null) throw new IllegalStateException("Slice is not a struct array: " + type);
+            return new Struct(data, elementLayout, at(i));
+        }
+
+        /**
+         * Zero-copy little-endian view over the slice bytes.
+         */
+        public ByteBuffer asByteBuffer() {
+            return data.slice(readable(offset, length * stride), length * stride).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public String getString() {
+            var bytes = new byte[length * stride];
+            data.get(readable(offset, bytes.length), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
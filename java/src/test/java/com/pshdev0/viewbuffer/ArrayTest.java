@@ -0,0 +1,91 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayTest {
+
+    @Test
+    public void testBulkArraysRoundTrip() {
+        var arena = new ViewBufferArena();
+        var samples = new float[100_000];
+        for (int i = 0; i < samples.length; i++) samples[i] = i * 0.5f;
+
+        var sensor = arena.struct("Sensor");
+        sensor.addString("id", "Sensor_0");
+        sensor.addArraySlice("samples", arena.floatArray(samples));
+        sensor.addArraySlice("counts", arena.intArray(1, -2, 3));
+        sensor.addArraySlice("levels", arena.shortArray((short) 7, (short) -8));
+        sensor.addArraySlice("timestamps", arena.longArray(1L << 40, -1L));
+        sensor.addArraySlice("weights", arena.doubleArray(Math.PI, -Math.E));
+
+        var root = ViewBufferReader.of(sensor.asByteBuffer((short) 1, true, true, false)).root("Sensor");
+        var readSamples = root.getSlice("samples");
+        assertEquals(samples.length, readSamples.length());
+        for (int i = 0; i < samples.length; i += 997) assertEquals(samples[i], readSamples.getFloat32(i));
+        assertEquals(-2, root.getSlice("counts").getInt32(1));
+        assertEquals(-8, root.getSlice("levels").getInt16(1));
+        assertEquals(1L << 40, root.getSlice("timestamps").getInt64(0));
+        assertEquals(-1L, root.getSlice("timestamps").getInt64(1));
+        assertEquals(Math.PI, root.getSlice("weights").getFloat64(0));
+        assertEquals(-Math.E, root.getSlice("weights").getFloat64(1));
+    }
+
+    @Test
+    public void testNioSourcesMatchArrays() {
+        var arena = new ViewBufferArena();
+        var ints = new int[] { 1, 2, 3, 4, 5 };
+
+        // big-endian and offset sources are converted element-wise, and their position is left untouched
+        var bigEndian = ByteBuffer.allocate(4 * ints.length).order(ByteOrder.BIG_ENDIAN);
+        bigEndian.asIntBuffer().put(ints);
+        var intSource = bigEndian.asIntBuffer().position(1);
+        var fromBuffer = arena.intArray(intSource);
+        assertEquals(1, intSource.position());
+        assertEquals(4, fromBuffer.arrayLength);
+        assertArrayEquals(Arrays.copyOf(arena.intArray(2, 3, 4, 5).bytes, 16), Arrays.copyOf(fromBuffer.bytes, 16));
+
+        assertArrayEquals(arena.intArray(ints).bytes, arena.intArray(IntBuffer.wrap(ints)).bytes);
+        assertArrayEquals(arena.floatArray(1.5f, 2.5f).bytes, arena.floatArray(FloatBuffer.wrap(new float[] { 1.5f, 2.5f })).bytes);
+        assertArrayEquals(arena.doubleArray(1.5, 2.5).bytes, arena.doubleArray(DoubleBuffer.wrap(new double[] { 1.5, 2.5 })).bytes);
+
+        var direct = ByteBuffer.allocateDirect(3).put(new byte[] { 9, 8, 7 }).flip();
+        assertArrayEquals(arena.byteArray((byte) 9, (byte) 8, (byte) 7).bytes, arena.byteArray(direct).bytes);
+    }
+
+    @Test
+    public void testInt64AndFloat64Fields() {
+        var arena = new ViewBufferArena();
+        var sample = arena.struct("Sample");
+        sample.addInt8("flag", 1);
+        sample.addInt64("time", 1234567890123L);
+        sample.addFloat64("value", 0.25);
+
+        var root = ViewBufferReader.of(sample.asByteBuffer((short) 1, true, false, false)).root("Sample");
+        assertEquals(8, root.layout().field("time").offset());
+        assertEquals(1234567890123L, root.getInt64("time"));
+        assertEquals(0.25, root.getFloat64("value"));
+
+        var code = sample.generateStructs("$Sample,i1flag,i8time,f8value");
+        assertTrue(code.contains("long time;"));
+        assertTrue(code.contains("double value;"));
+    }
+
+    @Test
+    public void testGrowingPastTheBufferLimitThrows() {
+        var array = new ViewBufferArena().arrayOf("Bytes");
+        array.grow(16);
+        var e = assertThrows(IllegalStateException.class, () -> array.grow(Integer.MAX_VALUE - 8));
+        assertTrue(e.getMessage().contains("per-buffer limit"));
+        assertThrows(IllegalStateException.class, () -> array.grow(Integer.MAX_VALUE)); // overflows an int
+        assertEquals(16, array.size);
+    }
+}
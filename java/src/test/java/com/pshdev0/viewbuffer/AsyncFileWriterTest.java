@@ -0,0 +1,104 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncFileWriterTest {
+
+    private static void assertSnapshot(Path file, int sequence) throws Exception {
+        Documents.assertSnapshot(ViewBufferReader.open(file), sequence);
+    }
+
+    private static void delete(Path dir) throws Exception {
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        var dir = Files.createTempDirectory("viewbuffer");
+        try (var writer = AsyncFileWriter.start((short) 1, true, true, Compression.DEFAULT);
+             var executor = Executors.newFixedThreadPool(4)) {
+            var producers = new ArrayList<Callable<ArrayList<CompletableFuture<Long>>>>();
+            for (int p = 0; p < 4; p++) {
+                var producer = p;
+                producers.add(() -> {
+                    var arena = new ViewBufferArena();
+                    var written = new ArrayList<CompletableFuture<Long>>();
+                    for (int s = producer * 100; s < producer * 100 + 100; s++) {
+                        written.add(writer.write(dir.resolve("producer" + producer).resolve(s + ".vbuf"), Documents.snapshot(arena, s)));
+                        arena.reset(); // the document was serialized by write
+                    }
+                    return written;
+                });
+            }
+            var results = executor.invokeAll(producers);
+            for (int p = 0; p < 4; p++) {
+                var written = results.get(p).get();
+                for (int i = 0; i < 100; i++) {
+                    var s = p * 100 + i;
+                    var file = dir.resolve("producer" + p).resolve(s + ".vbuf");
+                    var length = written.get(i).get(); // the file may not exist until its group is committed
+                    assertEquals(Files.size(file), length);
+                    assertSnapshot(file, s);
+                }
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForQueuedDocuments() throws Exception {
+        var dir = Files.createTempDirectory("viewbuffer");
+        try {
+            var writer = AsyncFileWriter.start((short) 1, true, true, null, 1, Duration.ofMillis(20));
+            var arena = new ViewBufferArena();
+            var written = new ArrayList<CompletableFuture<Long>>();
+            for (int s = 0; s < 20; s++) written.add(writer.write(dir.resolve(s + ".vbuf"), Documents.snapshot(arena, s))); // blocks while full
+            writer.close();
+            for (int s = 0; s < 20; s++) {
+                assertTrue(written.get(s).isDone());
+                assertSnapshot(dir.resolve(s + ".vbuf"), s);
+            }
+            assertThrows(IllegalStateException.class, () -> writer.write(dir.resolve("late.vbuf"), Documents.snapshot(arena, 0)));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testFailuresAreIsolatedAndLaterDocumentsReplaceEarlier() throws Exception {
+        var dir = Files.createTempDirectory("viewbuffer");
+        var notADirectory = Files.createFile(dir.resolve("file"));
+        try (var writer = AsyncFileWriter.start((short) 1, true, true, null, 16, Duration.ofMillis(50))) {
+            var arena = new ViewBufferArena();
+            var first = writer.write(dir.resolve("same.vbuf"), Documents.snapshot(arena, 1));
+            var failed = writer.write(notADirectory.resolve("x.vbuf"), Documents.snapshot(arena, 2));
+            var second = writer.write(dir.resolve("same.vbuf"), Documents.snapshot(arena, 3));
+            var failedAgain = writer.write(notADirectory.resolve("x.vbuf"), Documents.snapshot(arena, 4));
+
+            var failure = assertThrows(ExecutionException.class, failed::get);
+            assertInstanceOf(IOException.class, failure.getCause());
+            assertSame(failure.getCause(), assertThrows(ExecutionException.class, failedAgain::get).getCause());
+            first.get();
+            assertEquals(Files.size(dir.resolve("same.vbuf")), second.get());
+            assertSnapshot(dir.resolve("same.vbuf"), 3);
+        } finally {
+            delete(dir);
+        }
+    }
+}
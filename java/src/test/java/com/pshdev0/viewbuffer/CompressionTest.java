@@ -0,0 +1,94 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    private static ViewBuffer buildDocument(ViewBufferArena arena) {
+        return Documents.transform(arena, Documents.steps(arena, 5000));
+    }
+
+    private static void assertDocument(ViewBufferReader reader) { Documents.assertTransform(reader, 5000); }
+
+    @Test
+    public void testChunkedRoundTrip() throws Exception {
+        var root = buildDocument(new ViewBufferArena());
+        var compression = Compression.chunked(4096);
+        var bytes = Documents.toArray(root.asByteBuffer((short) 1, true, true, compression));
+
+        var reader = ViewBufferReader.of(ByteBuffer.wrap(bytes));
+        assertTrue(reader.isCompressed());
+        assertTrue(reader.isChunked());
+        assertEquals(4096, reader.chunkSize());
+        assertEquals((reader.blobSize() + 4095) / 4096, reader.chunkCount());
+        assertTrue(reader.chunkCount() > 1);
+        assertDocument(reader);
+
+        // the streamed output precomputes the chunk table and must match
+        var out = new ByteArrayOutputStream();
+        root.writeTo(out, (short) 1, true, true, compression);
+        assertArrayEquals(bytes, out.toByteArray());
+
+        // the file output back-patches the chunk table and must match
+        var file = Files.createTempFile("viewbuffer", ".bin");
+        root.writeBuffer(file.toString(), (short) 1, true, true, compression);
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+        Files.delete(file);
+
+        // the arena's pooled chunks are replaced when the chunk size changes
+        assertDocument(ViewBufferReader.of(root.asByteBuffer((short) 1, true, true, Compression.chunked(1 << 16))));
+        assertArrayEquals(bytes, Documents.toArray(root.asByteBuffer((short) 1, true, true, compression)));
+    }
+
+    @Test
+    public void testLevelAndStrategy() {
+        var root = buildDocument(new ViewBufferArena());
+        var fast = root.asByteBuffer((short) 1, true, true, Compression.DEFAULT.withLevel(Deflater.BEST_SPEED));
+        var huffman = root.asByteBuffer((short) 1, true, true, Compression.DEFAULT.withStrategy(Deflater.HUFFMAN_ONLY));
+        var stored = root.asByteBuffer((short) 1, true, true, Compression.chunked(1 << 16).withLevel(Deflater.NO_COMPRESSION));
+
+        assertDocument(ViewBufferReader.of(fast));
+        assertDocument(ViewBufferReader.of(huffman));
+        var reader = ViewBufferReader.of(stored);
+        assertTrue(reader.compressedBlobSize() > reader.blobSize());
+        assertDocument(reader);
+
+        // invalid settings fail on construction rather than on the first (possibly parallel) write
+        assertThrows(IllegalArgumentException.class, () -> Compression.DEFAULT.withLevel(10));
+        assertThrows(IllegalArgumentException.class, () -> Compression.chunked().withStrategy(3));
+    }
+
+    @Test
+    public void testPartialInflation() throws Exception {
+        var root = buildDocument(new ViewBufferArena());
+        for (var compression : new Compression[] { Compression.DEFAULT, Compression.chunked(4096) }) {
+            var bytes = Documents.toArray(root.asByteBuffer((short) 1, true, true, compression));
+            var file = Files.createTempFile("viewbuffer", ".bin");
+            Files.write(file, bytes);
+
+            // the first step sits near the start of the blob, so most of it is never inflated
+            var reader = ViewBufferReader.open(file, true);
+            assertEquals(0, reader.root("Transform").getSlice("steps").getStruct(0).getInt32("phase"));
+            assertTrue(reader.inflated() < reader.blobSize() / 2);
+            assertDocument(reader);
+
+            var blob = reader.blob(); // inflated into a direct buffer, as the file is mapped
+            assertTrue(blob.isDirect());
+            assertEquals(reader.blobSize(), reader.inflated());
+            assertEquals(ViewBufferReader.of(ByteBuffer.wrap(bytes)).blob(), blob);
+            Files.delete(file);
+
+            // threads sharing a reader each inflate as far as they need
+            var steps = ViewBufferReader.of(ByteBuffer.wrap(bytes), true).root("Transform").getSlice("steps");
+            IntStream.range(0, 5000).parallel().forEach(s -> assertEquals("step " + s, steps.getStruct(s).getString("label")));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.pshdev0.viewbuffer;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The document shapes shared by the tests, each with the assertions which check a read back copy.
+ */
+final class Documents {
+
+    private Documents() {}
+
+    /**
+     * A Core with a title, an in-situ Point and an array of fruits, each with a string, most primitive types and a
+     * float array.
+     */
+    static ViewBuffer basket(ViewBufferArena arena, int seed, int fruits) {
+        var fruitsArray = arena.arrayOf("Fruit");
+        for (int i = 0; i < fruits; i++) {
+            var fruit = arena.struct("Fruit");
+            fruit.addString("name", "fruit_" + seed + "_" + i);
+            fruit.addInt32("weight", seed * 1000 + i);
+            fruit.addBool("ripe", i % 2 == 0);
+            fruit.addInt64("id", 10_000_000_000L + i);
+            fruit.addArraySlice("scores", arena.floatArray(seed, i / 2f));
+            fruitsArray.addArrayItem(fruit);
+        }
+        var origin = arena.struct("Point");
+        origin.addFloat64("x", 1.5);
+        origin.addFloat64("y", -2.5);
+        var core = arena.struct("Core");
+        core.addString("title", "Basket " + seed);
+        core.addStruct("origin", origin);
+        core.addArraySlice("fruits", fruitsArray);
+        return core;
+    }
+
+    static void assertBasket(ViewBufferReader reader, int seed, int fruits) {
+        var core = reader.root("Core");
+        assertEquals("Basket " + seed, core.getString("title"));
+        assertEquals(-2.5, core.getStruct("origin").getFloat64("y"));
+        var slice = core.getSlice("fruits");
+        assertEquals(fruits, slice.length());
+        for (int i = 0; i < fruits; i++) {
+            var fruit = slice.getStruct(i);
+            assertEquals("fruit_" + seed + "_" + i, fruit.getString("name"));
+            assertEquals(seed * 1000 + i, fruit.getInt32("weight"));
+            assertEquals(10_000_000_000L + i, fruit.getInt64("id"));
+            assertEquals(i / 2f, fruit.getSlice("scores").getFloat32(1));
+        }
+    }
+
+    /**
+     * One step of a {@link #transform}.
+     */
+    static ViewBuffer step(ViewBufferArena arena, int s) {
+        var step = arena.struct("Step");
+        step.addInt32("phase", s);
+        step.addString("label", "step " + s);
+        step.addArraySlice("weights", arena.floatArray(s, s / 2f));
+        return step;
+    }
+
+    static ViewBuffer steps(ViewBufferArena arena, int steps) {
+        var stepArray = arena.arrayOf("Step");
+        for (int s = 0; s < steps; s++) stepArray.addArrayItem(step(arena, s));
+        return stepArray;
+    }
+
+    /**
+     * A Transform with an id and the given array of steps, e.g. from {@link #steps}.
+     */
+    static ViewBuffer transform(ViewBufferArena arena, ViewBuffer stepArray) {
+        var transform = arena.struct("Transform");
+        transform.addString("id", "FilterA");
+        transform.addArraySlice("steps", stepArray);
+        return transform;
+    }
+
+    static void assertTransform(ViewBufferReader reader, int steps) {
+        var root = reader.root("Transform");
+        assertEquals("FilterA", root.getString("id"));
+        var slice = root.getSlice("steps");
+        assertEquals(steps, slice.length());
+        for (int s = 0; s < steps; s += Math.max(1, steps / 10)) {
+            assertEquals(s, slice.getStruct(s).getInt32("phase"));
+            assertEquals("step " + s, slice.getStruct(s).getString("label"));
+            assertEquals(s / 2f, slice.getStruct(s).getSlice("weights").getFloat32(1));
+        }
+        assertEquals("step " + (steps - 1), slice.getStruct(steps - 1).getString("label"));
+    }
+
+    /**
+     * A Snapshot with one to seven readings, as appended to segments and written by the async writer.
+     */
+    static ViewBuffer snapshot(ViewBufferArena arena, int sequence) {
+        var readings = arena.arrayOf("Reading");
+        for (int r = 0; r <= sequence % 7; r++) {
+            var reading = arena.struct("Reading");
+            reading.addInt64("time", 1000L * sequence + r);
+            reading.addFloat32("value", sequence + r * 0.25f);
+            readings.addArrayItem(reading);
+        }
+        var snapshot = arena.struct("Snapshot");
+        snapshot.addString("sensor", "Sensor_" + sequence);
+        snapshot.addArraySlice("readings", readings);
+        return snapshot;
+    }
+
+    static void assertSnapshot(ViewBufferReader reader, int sequence) {
+        var root = reader.root("Snapshot");
+        assertEquals("Sensor_" + sequence, root.getString("sensor"));
+        var readings = root.getSlice("readings");
+        assertEquals(sequence % 7 + 1, readings.length());
+        assertEquals(1000L * sequence, readings.getStruct(0).getInt64("time"));
+    }
+
+    /**
+     * A Fleet of 200 devices whose strings and payloads repeat, on several levels, for deduplication and for
+     * documents with many relocation offsets.
+     */
+    static ViewBuffer fleet(ViewBufferArena arena) {
+        var deviceArray = arena.arrayOf("Device");
+        for (int i = 0; i < 200; i++) {
+            var device = arena.struct("Device");
+            device.addString("type", i % 2 == 0 ? "gauge" : "counter");
+            device.addArraySlice("payload", arena.byteArray((byte) (i % 3), (byte) 7));
+            var tag = arena.struct("Tag");
+            tag.addString("label", "gauge"); // the same contents on a deeper level
+            var tagArray = arena.arrayOf("Tag");
+            tagArray.addArrayItem(tag);
+            device.addArraySlice("tags", tagArray);
+            deviceArray.addArrayItem(device);
+        }
+        var root = arena.struct("Fleet");
+        root.addString("name", "gauge");
+        root.addArraySlice("devices", deviceArray);
+        return root;
+    }
+
+    static void assertFleet(ViewBufferReader reader) {
+        var fleet = reader.root("Fleet");
+        assertEquals("gauge", fleet.getString("name"));
+        var devices = fleet.getSlice("devices");
+        assertEquals(200, devices.length());
+        for (int i = 0; i < 200; i++) {
+            var device = devices.getStruct(i);
+            assertEquals(i % 2 == 0 ? "gauge" : "counter", device.getString("type"));
+            assertEquals(i % 3, device.getSlice("payload").getInt8(0));
+            assertEquals(7, device.getSlice("payload").getInt8(1));
+            assertEquals("gauge", device.getSlice("tags").getStruct(0).getString("label"));
+        }
+    }
+
+    /**
+     * One packet of a {@link #capture}.
+     */
+    static ViewBuffer packet(ViewBufferArena arena, int p) {
+        var packet = arena.struct("Packet");
+        packet.addInt32("sequence", p);
+        packet.addArraySlice("payload", arena.byteArray((byte) p, (byte) (p + 1), (byte) (p + 2)));
+        packet.addString("source", "Source_" + p);
+        return packet;
+    }
+
+    /**
+     * A Capture whose packets are followed by another field, as appended to in place.
+     */
+    static ViewBuffer capture(ViewBufferArena arena, int packets) {
+        var packetArray = arena.arrayOf("Packet");
+        for (int p = 0; p < packets; p++) packetArray.addArrayItem(packet(arena, p));
+        var capture = arena.struct("Capture");
+        capture.addString("name", "Capture_0");
+        capture.addArraySlice("packets", packetArray);
+        capture.addInt32("port", 8080);
+        return capture;
+    }
+
+    static void assertCapture(ViewBufferReader reader, int packets) {
+        var root = reader.root("Capture");
+        assertEquals("Capture_0", root.getString("name"));
+        assertEquals(8080, root.getInt32("port"));
+        var slice = root.getSlice("packets");
+        assertEquals(packets, slice.length());
+        for (int p = 0; p < packets; p++) {
+            var packet = slice.getStruct(p);
+            assertEquals(p, packet.getInt32("sequence"));
+            assertEquals("Source_" + p, packet.getString("source"));
+            assertEquals((byte) (p + 2), packet.getSlice("payload").getInt8(2));
+        }
+    }
+
+    static byte[] toArray(ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
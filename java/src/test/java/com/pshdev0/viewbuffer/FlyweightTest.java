@@ -0,0 +1,86 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.ToolProvider;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlyweightTest {
+
+    // compiles the generated source and loads its nested classes
+    private static ClassLoader compile(String source, Path dir) throws Exception {
+        var file = Files.writeString(dir.resolve("Basket.java"), source);
+        var classpath = Path.of(StringView.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        var result = ToolProvider.getSystemJavaCompiler().run(null, null, null, "-classpath", classpath, "-d", dir.toString(), file.toString());
+        assertEquals(0, result, source);
+        return new URLClassLoader(new URL[] { dir.toUri().toURL() }, StringView.class.getClassLoader());
+    }
+
+    @Test
+    public void testGeneratedFlyweightsReadTheBlob() throws Exception {
+        var reader = ViewBufferReader.of(Documents.basket(new ViewBufferArena(), 0, 50).asByteBuffer((short) 1, true, true, false));
+        var source = SchemaRegistry.intern(reader.structEncoding()).generateJava("example", "Basket");
+        assertTrue(source.contains("public int weight() { return buffer.getInt(base + 16); }"));
+
+        var dir = Files.createTempDirectory("flyweight");
+        try {
+            var loader = compile(source, dir);
+            var coreClass = loader.loadClass("example.Basket$Core");
+            var fruitClass = loader.loadClass("example.Basket$Fruit");
+            var pointClass = loader.loadClass("example.Basket$Point");
+            assertEquals(reader.layout("Fruit").size(), fruitClass.getField("SIZE").getInt(null));
+
+            var core = coreClass.getConstructor().newInstance();
+            coreClass.getMethod("wrap", ByteBuffer.class, int.class).invoke(core, reader.blob(), 0);
+            var title = (StringView) coreClass.getMethod("title").invoke(core);
+            assertTrue(title.contentEquals("Basket 0"));
+            assertEquals("Basket 0", title.toString());
+            var origin = coreClass.getMethod("origin", pointClass).invoke(core, pointClass.getConstructor().newInstance());
+            assertEquals(1.5, pointClass.getMethod("x").invoke(origin));
+            assertEquals(-2.5, pointClass.getMethod("y").invoke(origin));
+
+            assertEquals(50, coreClass.getMethod("fruitsLength").invoke(core));
+            var fruits = coreClass.getMethod("fruits", fruitClass, int.class);
+            var cursor = fruitClass.getConstructor().newInstance();
+            for (int i = 0; i < 50; i++) {
+                assertSame(cursor, fruits.invoke(core, cursor, i)); // one cursor repositioned over every element
+                var name = fruitClass.getMethod("name").invoke(cursor);
+                assertEquals("fruit_0_" + i, name.toString());
+                assertSame(name, fruitClass.getMethod("name").invoke(cursor));
+                assertEquals(i, fruitClass.getMethod("weight").invoke(cursor));
+                assertEquals(i % 2 == 0, fruitClass.getMethod("ripe").invoke(cursor));
+                assertEquals(10_000_000_000L + i, fruitClass.getMethod("id").invoke(cursor));
+                assertEquals(2, fruitClass.getMethod("scoresLength").invoke(cursor));
+                assertEquals(i / 2f, fruitClass.getMethod("scores", int.class).invoke(cursor, 1));
+            }
+            var outOfRange = assertThrows(InvocationTargetException.class, () -> fruits.invoke(core, cursor, 50));
+            assertInstanceOf(IndexOutOfBoundsException.class, outOfRange.getCause());
+        } finally {
+            try (var files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratedNamesMustNotClash() {
+        assertThrows(IllegalArgumentException.class, () -> ViewBuffer.generateJava("$Fruit,i4weight", null, "Fruit"));
+        // the length accessor of slice name would be nameLength()
+        var clash = assertThrows(IllegalArgumentException.class, () -> ViewBuffer.generateJava("$Fruit,*name[st,i4nameLength", null, "Fruits"));
+        assertTrue(clash.getMessage().contains("nameLength"));
+        assertThrows(IllegalArgumentException.class, () -> ViewBuffer.generateJava("$Fruit,i4hashCode", null, "Fruits"));
+        // struct names become class names, which must compile and not shadow the classes the code uses
+        for (var name : new String[] { "StringView", "ByteBuffer", "Objects", "class", "int" }) {
+            assertThrows(IllegalArgumentException.class, () -> ViewBuffer.generateJava("$" + name + ",i4weight", null, "Fruits"));
+            assertThrows(IllegalArgumentException.class, () -> ViewBuffer.generateJava("$Fruit,i4weight", null, name));
+        }
+    }
+}
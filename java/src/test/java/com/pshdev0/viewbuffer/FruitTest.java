@@ -1,12 +1,16 @@
 package com.pshdev0.viewbuffer;
 
 import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
 import static org.junit.jupiter.api.Assertions.*;
 
+@SuppressWarnings("deprecation") // the original static factory API, kept working
 public class FruitTest {
 
     @Test
-    public void testWriteFlatBuffer() {
+    public void testWriteFlatBuffer() throws Exception {
         assertDoesNotThrow(() -> {
             var appleData = ViewBuffer.byteArray(new byte[] { 1, 2, 3, 4, 5 });
             var bananaData = ViewBuffer.byteArray(new byte[] { 8, 13 });
@@ -40,9 +44,33 @@ public class FruitTest {
     }
 
     @Test
-    public void testReadFlatBuffer() {
-        assertDoesNotThrow(() -> {
-            // todo
-        });
+    public void testReadFlatBuffer() throws Exception {
+        var reader = ViewBufferReader.open(Path.of("../data/fruits.bin"));
+        assertTrue(reader.isCompressed());
+        assertEquals(1, reader.userDefinedVersion());
+        assertEquals(16, reader.structEncodingHash().length);
+
+        var core = reader.root("Core");
+        assertEquals("Fruit Basket", core.getString("title"));
+        assertEquals("Tropical Edition", core.getString("subtitle"));
+        assertEquals("Enjoy responsibly", core.getString("footer"));
+
+        var fruits = core.getSlice("fruits");
+        assertEquals(2, fruits.length());
+
+        var f0 = fruits.getStruct(0);
+        assertEquals("apple", f0.getString("name"));
+        assertEquals(150, f0.getInt32("weight"));
+        var data0 = f0.getSlice("data");
+        assertEquals(5, data0.length());
+        for (int i = 1; i < 6; i++) assertEquals(i, data0.getInt8(i - 1));
+
+        var f1 = fruits.getStruct(1);
+        assertEquals("banana", f1.getString("name"));
+        assertEquals(120, f1.getInt32("weight"));
+        var data1 = f1.getSlice("data");
+        assertEquals(2, data1.length());
+        assertEquals(8, data1.getInt8(0));
+        assertEquals(13, data1.getInt8(1));
     }
 }
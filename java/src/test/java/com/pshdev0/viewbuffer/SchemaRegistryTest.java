@@ -0,0 +1,69 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaRegistryTest {
+
+    private static ViewBuffer buildReading(ViewBufferArena arena, int value) {
+        var reading = arena.struct("Reading");
+        reading.addString("sensor", "Sensor_" + value);
+        reading.addInt32("value", value);
+        return reading;
+    }
+
+    @Test
+    public void testSchemaIsInternedOnce() {
+        var first = buildReading(new ViewBufferArena(), 1).schema();
+        var second = buildReading(new ViewBufferArena(), 2).schema();
+        assertSame(first, second);
+        assertEquals("$Reading,*sensor[st,i4value", first.encoding());
+        assertSame(first, SchemaRegistry.intern(first.encoding() + "  ")); // padding is ignored
+        assertSame(first, SchemaRegistry.lookup(first.hash()));
+        assertSame(first.generateStructs(), first.generateStructs()); // generated once, on demand
+        assertTrue(first.generateStructs().contains("struct Reading {"));
+    }
+
+    @Test
+    public void testHeaderUsesCachedSchema() {
+        var root = buildReading(new ViewBufferArena(), 3);
+        var schema = root.schema();
+
+        var reader = ViewBufferReader.of(root.asByteBuffer((short) 1, true, true, false));
+        assertArrayEquals(schema.hash(), reader.structEncodingHash());
+        assertEquals(schema.encoding(), reader.structEncoding());
+        assertEquals(3, reader.root("Reading").getInt32("value"));
+
+        // without the encoding, a known hash still resolves the layouts
+        var hashOnly = ViewBufferReader.of(root.asByteBuffer((short) 1, false, true, false));
+        assertEquals("", hashOnly.structEncoding());
+        assertEquals("Sensor_3", hashOnly.root("Reading").getString("sensor"));
+
+        // a document with its encoding never depends on what the registry holds, one with only its hash does
+        var withEncoding = root.asByteBuffer((short) 1, true, true, false);
+        var withHash = root.asByteBuffer((short) 1, false, true, false);
+        SchemaRegistry.clear();
+        assertEquals(3, ViewBufferReader.of(withEncoding).root("Reading").getInt32("value"));
+        SchemaRegistry.clear();
+        var unknown = assertThrows(IllegalStateException.class, () -> ViewBufferReader.of(withHash).root("Reading"));
+        assertTrue(unknown.getMessage().contains("SchemaRegistry.intern"));
+        SchemaRegistry.intern(schema.encoding());
+        assertEquals(3, ViewBufferReader.of(withHash).root("Reading").getInt32("value"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSchemasAreEvicted() {
+        var kept = SchemaRegistry.intern("$Kept,i4value");
+        var first = SchemaRegistry.intern("$Evicted0,i4value");
+        for (int i = 1; i <= SchemaRegistry.MAX_SCHEMAS; i++) {
+            SchemaRegistry.intern("$Evicted" + i + ",i4value");
+            if(i % 100 == 0) assertSame(kept, SchemaRegistry.lookup(kept.hash())); // keeps it recently used
+        }
+        assertEquals(SchemaRegistry.MAX_SCHEMAS, SchemaRegistry.size());
+        assertNull(SchemaRegistry.lookup(first.hash()));
+        assertNotSame(first, SchemaRegistry.intern(first.encoding())); // registered afresh
+        assertSame(kept, SchemaRegistry.intern(kept.encoding()));
+        SchemaRegistry.clear();
+    }
+}
@@ -0,0 +1,88 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentTest {
+
+    @Test
+    public void testRandomAccess() throws Exception {
+        var file = Files.createTempFile("viewbuffer", ".vseg");
+        var arena = new ViewBufferArena();
+        try (var writer = SegmentWriter.create(file, (short) 1, true, true, null)) {
+            for (int s = 0; s < 200; s++) {
+                assertEquals(s, writer.append(Documents.snapshot(arena, s)));
+                arena.reset();
+            }
+            // compressed and pre-serialized documents can be mixed in, with their own ids
+            writer.append(9000L, Documents.snapshot(arena, 200).asByteBuffer((short) 1, true, true, Compression.DEFAULT));
+        }
+
+        try (var reader = SegmentReader.open(file)) {
+            assertFalse(reader.isRecovered());
+            assertEquals(201, reader.documentCount());
+            for (int s = 199; s >= 0; s -= 13) {
+                assertEquals(0, reader.documentOffset(s) % 8);
+                Documents.assertSnapshot(reader.document(s), s);
+            }
+            assertEquals(200, reader.find(9000L));
+            assertEquals(-1, reader.find(201));
+            assertTrue(reader.document(200).isCompressed());
+            Documents.assertSnapshot(reader.document(200), 200);
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testCorruptIndexIsRejected() throws Exception {
+        var file = Files.createTempFile("viewbuffer", ".vseg");
+        try (var writer = SegmentWriter.create(file, (short) 1, true, false, null)) {
+            writer.append(Documents.snapshot(new ViewBufferArena(), 1));
+        }
+
+        // a document count whose index length overflows an int, with an index offset to match the segment size
+        var size = Files.size(file);
+        var trailer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putLong(size - 24 - 24L * Integer.MAX_VALUE).putInt(Integer.MAX_VALUE).flip();
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(trailer, size - 24);
+        }
+        assertThrows(IllegalStateException.class, () -> SegmentReader.open(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testRecoverUnclosedSegment() throws Exception {
+        var file = Files.createTempFile("viewbuffer", ".vseg");
+        var arena = new ViewBufferArena();
+        var writer = SegmentWriter.create(file, (short) 1, true, false, Compression.chunked(256));
+        for (int s = 0; s < 20; s++) writer.append(s == 7 ? 7000L : s, Documents.snapshot(arena, s));
+        writer.close();
+
+        // drop the index and trailer and half of the last document, as if the writer had crashed
+        var reader = SegmentReader.open(file);
+        var end = reader.documentOffset(19) + reader.documentLength(19) / 2;
+        reader.close();
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(end);
+        }
+
+        try (var recovered = SegmentReader.open(file)) {
+            assertTrue(recovered.isRecovered());
+            assertEquals(19, recovered.documentCount());
+            Documents.assertSnapshot(recovered.document(18), 18);
+            assertEquals(5, recovered.find(5));
+            assertEquals(7000L, recovered.documentId(7)); // explicit ids survive recovery
+            assertEquals(7, recovered.find(7000L));
+            assertEquals(-1, recovered.find(7));
+        }
+        Files.delete(file);
+    }
+}
@@ -2,8 +2,13 @@ package com.pshdev0.viewbuffer;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.zip.Inflater;
 
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("deprecation") // the original static factory API, kept working
 class SensorPipelineTest {
 
     @Test
@@ -100,9 +105,81 @@ class SensorPipelineTest {
     }
 
     @Test
-    public void testReadFlatBufferPipeline() {
-        assertDoesNotThrow(() -> {
-            // your deserialization logic here…
-        });
+    public void testReadFlatBufferPipeline() throws Exception {
+        var reader = ViewBufferReader.open(Path.of("../data/pipeline.bin"));
+        var config = reader.root("PipelineConfig");
+
+        // only the pipeline's own structs, whatever else was built on this thread's default arena
+        assertEquals(Set.of("PipelineConfig", "Network", "Device", "Dashboard", "Theme", "Widget", "DataBlob", "Transform", "Step", "Packet"),
+                reader.layouts().keySet());
+
+        // endpoint
+        assertEquals("https://iot.example.com", config.getString("endpoint"));
+
+        // networks
+        var networks = config.getSlice("networks");
+        assertEquals(2, networks.length());
+        for (int n = 0; n < 2; n++) {
+            var network = networks.getStruct(n);
+            assertEquals("Network_" + n, network.getString("id"));
+            var devices = network.getSlice("devices");
+            assertEquals(1, devices.length());
+            assertEquals("Device_" + n, devices.getStruct(0).getString("id"));
+            assertEquals(100 + n, devices.getStruct(0).getInt32("statusCode"));
+        }
+
+        // dashboards
+        var dashboards = config.getSlice("dashboards");
+        assertEquals(1, dashboards.length());
+        var dashboard = dashboards.getStruct(0);
+        assertEquals("MainDashboard", dashboard.getString("id"));
+        var theme = dashboard.getStruct("theme");
+        assertEquals(0.1f, theme.getFloat32("hue"));
+        assertEquals(0.2f, theme.getFloat32("saturation"));
+        assertEquals(0.3f, theme.getFloat32("brightness"));
+
+        // widget
+        var widgets = dashboard.getSlice("widgets");
+        assertEquals(1, widgets.length());
+        var widget = widgets.getStruct(0);
+        assertEquals("Gauge1", widget.getString("id"));
+        assertEquals("gauge", widget.getString("type"));
+        assertTrue(widget.getBool("enabled"));
+        assertEquals(15.0f, widget.getFloat32("posX"));
+        assertEquals(25.0f, widget.getFloat32("posY"));
+
+        // data blob
+        var blobs = config.getSlice("dataBlobs");
+        assertEquals(1, blobs.length());
+        assertEquals(256, blobs.getStruct(0).getInt32("length"));
+        assertTrue(blobs.getStruct(0).getSlice("compressedPayload").length() > 0);
+
+        // transform
+        var transforms = config.getSlice("transforms");
+        assertEquals(1, transforms.length());
+        var transform = transforms.getStruct(0);
+        assertEquals("FilterA", transform.getString("id"));
+        assertEquals(5, transform.getInt32("priority"));
+        var steps = transform.getSlice("steps");
+        assertEquals(3, steps.length());
+        for (int s = 0; s < 3; s++) {
+            assertEquals(s, steps.getStruct(s).getInt32("phase"));
+            assertEquals(100 * s, steps.getStruct(s).getInt32("durationMs"));
+        }
+
+        // packet
+        var packets = config.getSlice("packets");
+        assertEquals(1, packets.length());
+        var packet = packets.getStruct(0);
+        assertEquals("Pkt1", packet.getString("id"));
+        assertEquals(16, packet.getInt32("size"));
+        assertTrue(packet.getSlice("decompressedBytes").isEmpty());
+
+        var inflater = new Inflater();
+        inflater.setInput(packet.getSlice("compressedBytes").asByteBuffer());
+        var decompressed = new byte[packet.getInt32("size")];
+        assertEquals(16, inflater.inflate(decompressed));
+        inflater.end();
+        for (var b : decompressed) assertEquals(42, b);
     }
 }
\ No newline at end of file
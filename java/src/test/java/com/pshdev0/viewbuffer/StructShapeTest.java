@@ -0,0 +1,98 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StructShapeTest {
+
+    private static final StructShape POSITION = StructShape.define("Position").float64("x").float64("y").build();
+    private static final StructShape DEVICE = StructShape.define("Device")
+            .string("id").int32("statusCode").bool("online").struct("position", POSITION).build();
+    private static final StructShape NETWORK = StructShape.define("Network")
+            .string("id").int64("uptime").slice("devices", DEVICE).build();
+
+    private static ViewBuffer buildAdded(ViewBufferArena arena) {
+        var deviceArray = arena.arrayOf("Device");
+        for (int d = 0; d < 100; d++) {
+            var position = arena.struct("Position");
+            position.addFloat64("x", d * 0.5);
+            position.addFloat64("y", -d);
+            var device = arena.struct("Device");
+            device.addString("id", "Device_" + d);
+            device.addInt32("statusCode", d);
+            device.addBool("online", d % 3 == 0);
+            device.addStruct("position", position);
+            deviceArray.addArrayItem(device);
+        }
+        var network = arena.struct("Network");
+        network.addString("id", "Network_0");
+        network.addInt64("uptime", 1L << 40);
+        network.addArraySlice("devices", deviceArray);
+        return network;
+    }
+
+    private static ViewBuffer buildShaped(ViewBufferArena arena) {
+        var id = DEVICE.field("id");
+        var statusCode = DEVICE.field("statusCode");
+        var online = DEVICE.field("online");
+        var deviceArray = arena.shapedArray(DEVICE);
+        for (int d = 0; d < 100; d++) {
+            var position = arena.shaped(POSITION);
+            position.setFloat64("y", -d); // fields can be set in any order
+            position.setFloat64("x", d * 0.5);
+            var device = arena.shaped(DEVICE);
+            device.setStruct("position", position);
+            device.setBool(online, d % 3 == 0);
+            device.setInt32(statusCode, d);
+            device.setString(id, "Device_" + d);
+            deviceArray.addArrayItem(device);
+        }
+        var network = arena.shaped(NETWORK);
+        network.setArraySlice("devices", deviceArray);
+        network.setInt64("uptime", 1L << 40);
+        network.setString("id", "Network_0");
+        return network;
+    }
+
+    @Test
+    public void testShapedMatchesAdded() {
+        var added = buildAdded(new ViewBufferArena()).asByteBuffer((short) 1, true, true, false);
+        var shaped = buildShaped(new ViewBufferArena()).asByteBuffer((short) 1, true, true, false);
+        assertEquals(added, shaped);
+
+        var reader = ViewBufferReader.of(shaped);
+        var device = reader.root("Network").getSlice("devices").getStruct(42);
+        assertEquals("Device_42", device.getString("id"));
+        assertEquals(21.0, device.getStruct("position").getFloat64("x"));
+    }
+
+    @Test
+    public void testSettingASliceTwiceReplacesIt() {
+        var arena = new ViewBufferArena();
+        var network = arena.shaped(NETWORK);
+        network.setString("id", "first");
+        network.setString("id", "second");
+        network.setArraySlice("devices", arena.shapedArray(DEVICE));
+        var reader = ViewBufferReader.of(network.asByteBuffer((short) 1, true, true, false));
+        assertEquals("second", reader.root("Network").getString("id"));
+    }
+
+    @Test
+    public void testShapeChecks() {
+        var arena = new ViewBufferArena();
+        var device = arena.shaped(DEVICE);
+        assertThrows(IllegalStateException.class, () -> device.addInt32("extra", 1));
+        assertThrows(IllegalStateException.class, () -> device.setInt32(NETWORK.field("uptime"), 1));
+        assertThrows(IllegalStateException.class, () -> device.setInt64("statusCode", 1));
+        assertThrows(IllegalStateException.class, () -> device.setStruct("position", arena.shaped(DEVICE)));
+        assertThrows(IllegalStateException.class, () -> device.setArraySlice("id", arena.intArray(1)));
+
+        var devices = arena.shapedArray(DEVICE);
+        var unshaped = arena.struct("Device");
+        unshaped.addString("id", "Device_0");
+        assertThrows(IllegalStateException.class, () -> devices.addArrayItem(unshaped));
+        devices.addArrayItem(device);
+        assertThrows(IllegalStateException.class, () -> device.setInt32("statusCode", 1));
+    }
+}
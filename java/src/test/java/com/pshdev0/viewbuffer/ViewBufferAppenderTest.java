@@ -0,0 +1,117 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewBufferAppenderTest {
+
+    private static Path writeCapture(int packets) throws Exception {
+        var file = Files.createTempFile("viewbuffer", ".bin");
+        Documents.capture(new ViewBufferArena(), packets).writeBuffer(file.toString(), (short) 1, true, true, false);
+        return file;
+    }
+
+    private static void assertCapture(Path file, int packets) throws Exception {
+        var reader = ViewBufferReader.open(file);
+        Documents.assertCapture(reader, packets);
+
+        // the offset table must list exactly the slice slots still in use
+        var layout = reader.layout("Packet");
+        var expected = new HashSet<Integer>();
+        expected.add(reader.layout("Capture").field("name").offset());
+        var packetsSlot = reader.layout("Capture").field("packets").offset();
+        expected.add(packetsSlot);
+        var start = reader.blob().getInt(packetsSlot);
+        for (int p = 0; p < packets; p++) {
+            expected.add(start + p * layout.size() + layout.field("payload").offset());
+            expected.add(start + p * layout.size() + layout.field("source").offset());
+        }
+        var actual = new HashSet<Integer>();
+        var header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < reader.offsetCount(); i++) actual.add(header.getInt(reader.offsetTableIndex() + 4 + 4 * i));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testAppendInPlace() throws Exception {
+        var file = writeCapture(10);
+        var arena = new ViewBufferArena();
+        try (var appender = ViewBufferAppender.open(file, "Capture", "packets")) {
+            for (int p = 10; p < 100; p++) {
+                appender.append(Documents.packet(arena, p));
+                arena.reset();
+            }
+            assertEquals(100, appender.length());
+        }
+        assertCapture(file, 100);
+
+        // a reopened file carries on from where it was left
+        try (var appender = ViewBufferAppender.open(file, "Capture", "packets")) {
+            appender.append(Documents.packet(arena, 100));
+        }
+        assertCapture(file, 101);
+        Files.delete(file);
+    }
+
+    @Test
+    public void testAppendToNullSlice() throws Exception {
+        var arena = new ViewBufferArena();
+        var archive = arena.arrayOf("Packet");
+        archive.addArrayItem(Documents.packet(arena, 0)); // so the file knows the Packet encoding
+        var capture = arena.struct("Capture");
+        capture.addString("name", "Capture_0");
+        capture.addNullPointerSlice("packets", "Packet");
+        capture.addInt32("port", 8080);
+        capture.addArraySlice("archive", archive);
+        var file = Files.createTempFile("viewbuffer", ".bin");
+        capture.writeBuffer(file.toString(), (short) 1, true, true, false);
+
+        try (var appender = ViewBufferAppender.open(file, "Capture", "packets")) {
+            assertEquals(0, appender.length());
+            for (int p = 0; p < 20; p++) appender.append(Documents.packet(arena, p));
+        }
+        var reader = ViewBufferReader.open(file);
+        Documents.assertCapture(reader, 20);
+        assertEquals(1, reader.root("Capture").getSlice("archive").length());
+
+        // the slot was added to the offset table, so the pointer is relocated like any other
+        var slot = reader.layout("Capture").field("packets").offset();
+        assertTrue(Arrays.stream(reader.relocationOffsets()).anyMatch(offset -> offset == slot));
+        assertEquals(3 + 2 * 21, reader.offsetCount()); // name, packets and archive, then each packet's two slices
+        Files.delete(file);
+    }
+
+    @Test
+    public void testAppendChecks() throws Exception {
+        var file = writeCapture(1);
+        var arena = new ViewBufferArena();
+        try (var appender = ViewBufferAppender.open(file, "Capture", "packets")) {
+            var other = arena.struct("Packet");
+            other.addInt32("sequence", 1); // a different Packet encoding
+            assertThrows(IllegalStateException.class, () -> appender.append(other));
+            assertThrows(IllegalStateException.class, () -> appender.append(arena.struct("Capture")));
+        }
+        assertThrows(IllegalStateException.class, () -> ViewBufferAppender.open(file, "Capture", "port"));
+        assertCapture(file, 1);
+        Files.delete(file);
+
+        // an array another slice shares cannot grow for one of them alone
+        var packets = arena.arrayOf("Packet");
+        packets.addArrayItem(Documents.packet(arena, 0));
+        var capture = arena.struct("Capture");
+        capture.addArraySlice("packets", packets);
+        capture.addArraySlice("replay", packets);
+        var shared = Files.createTempFile("viewbuffer", ".bin");
+        capture.writeBuffer(shared.toString(), (short) 1, true, true, false);
+        assertThrows(IllegalStateException.class, () -> ViewBufferAppender.open(shared, "Capture", "packets"));
+        Files.delete(shared);
+    }
+}
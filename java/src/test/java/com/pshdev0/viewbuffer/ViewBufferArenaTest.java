@@ -0,0 +1,132 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewBufferArenaTest {
+
+    private static ByteBuffer buildBasket(ViewBufferArena arena, int seed) {
+        return Documents.basket(arena, seed, 100).asByteBuffer((short) 1, true, true, false);
+    }
+
+    @Test
+    public void testConcurrentArenas() throws Exception {
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            var tasks = new ArrayList<Callable<ByteBuffer>>();
+            for (int seed = 0; seed < 8; seed++) {
+                var s = seed;
+                tasks.add(() -> buildBasket(new ViewBufferArena(), s));
+            }
+            var results = executor.invokeAll(tasks);
+            for (int seed = 0; seed < 8; seed++) Documents.assertBasket(ViewBufferReader.of(results.get(seed).get()), seed, 100);
+        }
+    }
+
+    @Test
+    public void testResetReusesBuffers() {
+        var arena = new ViewBufferArena();
+        var first = buildBasket(arena, 1);
+        var bufferCount = arena.bufferCount();
+
+        arena.reset();
+        assertEquals(0, arena.bufferCount());
+
+        var second = buildBasket(arena, 1);
+        assertEquals(bufferCount, arena.bufferCount());
+        assertEquals(first, second);
+        Documents.assertBasket(ViewBufferReader.of(second), 1, 100);
+    }
+
+    @Test
+    public void testEncodingOnlyIncludesOwnStructs() {
+        var other = new ViewBufferArena();
+        other.struct("Unrelated").addInt32("x", 1);
+
+        var arena = new ViewBufferArena();
+        arena.struct("Leftover").addInt32("x", 1); // built in the same arena but not part of the document
+        var reader = ViewBufferReader.of(buildBasket(arena, 2));
+        assertFalse(reader.structEncoding().contains("Unrelated"));
+        assertFalse(reader.structEncoding().contains("Leftover"));
+        assertTrue(reader.layouts().containsKey("Fruit"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDefaultArenaIsScopedToOneDocument() {
+        var root = ViewBuffer.struct("Scoped");
+        root.addString("name", "first");
+        var arena = root.arena();
+        assertSame(arena, ViewBufferArena.current());
+
+        var first = root.asByteBuffer((short) 1, true, true, false);
+        assertNotSame(arena, ViewBufferArena.current()); // the thread no longer holds the written document
+        assertEquals(first, root.asByteBuffer((short) 1, true, true, false)); // which stays valid
+        var next = ViewBuffer.struct("Next");
+        assertThrows(IllegalStateException.class, () -> next.addStruct("scoped", root));
+    }
+
+    @Test
+    public void testMixingArenasThrows() {
+        var a = new ViewBufferArena();
+        var b = new ViewBufferArena();
+        assertThrows(IllegalStateException.class, () -> a.struct("Core").addArraySlice("x", b.intArray(1, 2)));
+    }
+
+    @Test
+    public void testDeduplicatedLeavesAreStoredOnce() throws Exception {
+        var plain = Documents.fleet(new ViewBufferArena()).asByteBuffer((short) 1, true, true, false);
+        var root = Documents.fleet(new ViewBufferArena().setDeduplicating(true));
+        var deduplicated = root.asByteBuffer((short) 1, true, true, false);
+        var plainReader = ViewBufferReader.of(plain);
+        var reader = ViewBufferReader.of(deduplicated);
+        assertEquals(plainReader.offsetCount(), reader.offsetCount());
+        // one "gauge", one "counter" and three distinct payloads remain of every string and payload
+        var saved = 100 * 5 + 100 * 7 + 200 * 5 + 5 + 200 * 2 - (5 + 7 + 3 * 2);
+        assertEquals(plainReader.blobSize() - saved, reader.blobSize());
+
+        Documents.assertFleet(reader);
+
+        // every write path shares the one layout
+        var out = new ByteArrayOutputStream();
+        root.writeTo(out, (short) 1, true, true, false);
+        assertEquals(deduplicated.rewind(), ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static ByteBuffer buildTransform(ViewBufferArena arena, ViewBuffer stepArray) {
+        return Documents.transform(arena, stepArray).asByteBuffer((short) 1, true, true, false);
+    }
+
+    @Test
+    public void testParallelArrayMatchesSequential() {
+        var sequential = new ViewBufferArena();
+        var expected = buildTransform(sequential, Documents.steps(sequential, 20000));
+
+        var parallel = new ViewBufferArena();
+        var actual = buildTransform(parallel, parallel.parallelArrayOf("Step", 20000, Documents::step));
+        assertEquals(expected, actual);
+
+        // the adopted buffers are recycled with the arena's own
+        parallel.reset();
+        assertEquals(expected, buildTransform(parallel, parallel.parallelArrayOf("Step", 20000, Documents::step)));
+    }
+
+    @Test
+    public void testParallelArrayChecksElements() {
+        var arena = new ViewBufferArena();
+        var other = new ViewBufferArena();
+        assertThrows(IllegalStateException.class, () -> arena.parallelArrayOf("Step", 10, (a, s) -> Documents.step(other, s)));
+        assertThrows(IllegalStateException.class, () -> arena.parallelArrayOf("Step", 20000, (a, s) -> {
+            var step = a.struct("Step");
+            if (s < 10000) step.addInt32("phase", s);
+            else step.addInt64("phase", s); // the alignment changes between segments
+            return step;
+        }));
+    }
+}
@@ -0,0 +1,79 @@
+package com.pshdev0.viewbuffer;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewBufferMetricsTest {
+
+    private static ViewBuffer buildDocument(ViewBufferArena arena) {
+        return Documents.transform(arena, Documents.steps(arena, 500));
+    }
+
+    @Test
+    public void testListenerReceivesEveryWrite() throws Exception {
+        var writes = new ArrayList<ViewBufferMetrics.Write>();
+        var compressions = new ArrayList<ViewBufferMetrics.Compress>();
+        ViewBufferMetrics.Listener listener = new ViewBufferMetrics.Listener() {
+            @Override public void written(ViewBufferMetrics.Write write) { writes.add(write); }
+            @Override public void compressed(ViewBufferMetrics.Compress compress) { compressions.add(compress); }
+        };
+        var root = buildDocument(new ViewBufferArena());
+        ViewBufferMetrics.addListener(listener);
+        try {
+            var bytes = root.asByteBuffer((short) 1, true, true, false);
+            var compressed = root.asByteBuffer((short) 1, true, true, true);
+            var streamed = root.writeTo(new ByteArrayOutputStream(), (short) 1, true, true, true);
+            ViewBuffer.compress(root);
+
+            assertEquals(3, writes.size());
+            var reader = ViewBufferReader.of(bytes);
+            for (var write : writes) {
+                assertEquals(reader.headerSize(), write.headerBytes());
+                assertEquals(reader.blobSize(), write.blobBytes());
+                assertEquals(reader.offsetCount(), write.relocationCount());
+                assertEquals(3 + 2 * 500, write.bufferCount()); // the root, its id and array, then each label and weights
+                assertTrue(write.totalNanos() > 0);
+            }
+            assertEquals(bytes.remaining(), writes.get(0).totalBytes());
+            assertEquals(1.0, writes.get(0).compressionRatio());
+            assertEquals(compressed.remaining(), writes.get(1).totalBytes());
+            assertTrue(writes.get(1).compressionRatio() < 1);
+            assertEquals(streamed, writes.get(2).totalBytes());
+            assertEquals(1, compressions.size());
+        } finally {
+            ViewBufferMetrics.removeListener(listener);
+        }
+
+        root.asByteBuffer((short) 1, true, true, false);
+        assertEquals(3, writes.size());
+    }
+
+    @Test
+    public void testWritesAreRecordedAsJfrEvents() throws Exception {
+        var root = buildDocument(new ViewBufferArena());
+        var file = Files.createTempFile("viewbuffer", ".jfr");
+        try (var recording = new Recording()) {
+            recording.enable("com.pshdev0.viewbuffer.Write");
+            recording.start();
+            root.asByteBuffer((short) 1, true, true, true);
+            recording.stop();
+            recording.dump(file);
+        }
+        var events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertEquals(1, events.size());
+        var event = events.get(0);
+        assertEquals("com.pshdev0.viewbuffer.Write", event.getEventType().getName());
+        assertEquals(root.serializedSize(true, true) - event.getInt("headerBytes"), event.getLong("blobBytes"));
+        assertTrue(event.getDouble("compressionRatio") < 1);
+        // begun with the write, so the event spans its phases
+        assertTrue(event.getDuration().toNanos() >= event.getLong("layoutNanos") + event.getLong("compressNanos"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static com.pshdev0.viewbuffer.ViewBuffer.HEADER_FATBUFFER_VERSION;
+import static com.pshdev0.viewbuffer.ViewBuffer.HEADER_FATBUFFER_WIDE_VERSION;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewBufferReaderTest {
+
+    private static final StructShape INNER = StructShape.define("Inner").int32("a").int8("b").build();
+    private static final StructShape OUTER = StructShape.define("Outer").struct("inner", INNER).int8("c").build();
+
+    private static ViewBuffer inner(ViewBufferArena arena, int i) {
+        var inner = arena.struct("Inner");
+        inner.addInt32("a", 1000 + i);
+        inner.addInt8("b", i);
+        return inner;
+    }
+
+    @Test
+    public void testInSituStructIsPaddedToItsAlignment() {
+        var arena = new ViewBufferArena();
+        var inner = inner(arena, 7);
+        var outer = arena.struct("Outer");
+        outer.addStruct("inner", inner);
+        outer.addInt8("c", 42);
+        var buffer = outer.asByteBuffer((short) 1, true, false, false);
+
+        var reader = ViewBufferReader.of(buffer);
+        assertEquals(8, reader.layout("Inner").size());
+        assertEquals(8, reader.layout("Outer").field("c").offset());
+        var root = reader.root("Outer");
+        assertEquals(1007, root.getStruct("inner").getInt32("a"));
+        assertEquals(7, root.getStruct("inner").getInt8("b"));
+        assertEquals(42, root.getInt8("c"));
+
+        // a shaped struct has the same layout
+        assertEquals(reader.layout("Inner").size(), INNER.size());
+        assertEquals(reader.layout("Outer").field("c").offset(), OUTER.field("c").offset());
+        var shapedArena = new ViewBufferArena();
+        var shapedInner = shapedArena.shaped(INNER);
+        shapedInner.setInt32("a", 1007);
+        shapedInner.setInt8("b", 7);
+        var shapedOuter = shapedArena.shaped(OUTER);
+        shapedOuter.setStruct("inner", shapedInner);
+        shapedOuter.setInt8("c", 42);
+        assertEquals(buffer, shapedOuter.asByteBuffer((short) 1, true, false, false));
+    }
+
+    @Test
+    public void testTrailingStructArrayElementsArePadded() {
+        var arena = new ViewBufferArena();
+        var inners = arena.arrayOf("Inner");
+        for (int i = 0; i < 3; i++) inners.addArrayItem(inner(arena, i));
+        var outer = arena.struct("Outer");
+        outer.addString("name", "outer");
+        outer.addArraySlice("inners", inners); // the array is the last buffer of the blob
+
+        var reader = ViewBufferReader.of(outer.asByteBuffer((short) 1, true, false, false));
+        var slice = reader.root("Outer").getSlice("inners");
+        assertEquals(3 * 8, slice.asByteBuffer().remaining());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1000 + i, slice.getStruct(i).getInt32("a"));
+            assertEquals(i, slice.getStruct(i).getInt8("b"));
+        }
+    }
+
+    @Test
+    public void testCorruptHeadersAndSlicesAreRejected() {
+        var bytes = Documents.snapshot(new ViewBufferArena(), 3).asByteBuffer((short) 1, true, true, false);
+        var reader = ViewBufferReader.of(bytes);
+
+        var overrun = ByteBuffer.allocate(bytes.limit()).order(bytes.order()).put(bytes.duplicate());
+        overrun.putInt(reader.offsetTableIndex(), 1_000_000);
+        var e = assertThrows(IllegalStateException.class, () -> ViewBufferReader.of(overrun.clear()));
+        assertTrue(e.getMessage().contains("offset table"));
+
+        var tooSmall = ByteBuffer.allocate(bytes.limit()).order(bytes.order()).put(bytes.duplicate());
+        tooSmall.putInt(8, 4); // the header size
+        assertThrows(IllegalStateException.class, () -> ViewBufferReader.of(tooSmall.clear()));
+
+        // a length with its top bytes set was read as its low 4 bytes
+        var slot = reader.headerSize() + reader.layout("Snapshot").field("sensor").offset();
+        var wideLength = ByteBuffer.allocate(bytes.limit()).order(bytes.order()).put(bytes.duplicate());
+        wideLength.putLong(slot + 8, (1L << 32) + 8);
+        var root = ViewBufferReader.of(wideLength.clear()).root("Snapshot");
+        assertThrows(IllegalStateException.class, () -> root.getString("sensor"));
+    }
+
+    @Test
+    public void testCompactOffsetTable() {
+        var plain = ViewBufferReader.of(Documents.fleet(new ViewBufferArena()).asByteBuffer((short) 1, true, true, false));
+        for (var compression : new Compression[] { null, Compression.DEFAULT, Compression.chunked(4096) }) {
+            var root = Documents.fleet(new ViewBufferArena().setCompactingOffsets(true));
+            var bytes = root.asByteBuffer((short) 1, true, true, compression);
+            var reader = ViewBufferReader.of(bytes);
+            assertTrue(reader.hasCompactOffsets());
+            assertArrayEquals(plain.relocationOffsets(), reader.relocationOffsets());
+            assertTrue(reader.headerSize() < plain.headerSize() - 2 * plain.offsetCount());
+            var tags = reader.root("Fleet").getSlice("devices").getStruct(199).getSlice("tags");
+            assertEquals("gauge", tags.getStruct(0).getString("label"));
+
+            // every write path sizes the header alike
+            var dst = ByteBuffer.allocate(root.maxSerializedSize(true, true, compression));
+            root.writeTo(dst, (short) 1, true, true, compression);
+            assertEquals(bytes.rewind(), dst.flip());
+        }
+    }
+
+    @Test
+    public void testWideFormat() throws Exception {
+        var plain = ViewBufferReader.of(Documents.fleet(new ViewBufferArena()).asByteBuffer((short) 1, true, true, false));
+        assertEquals(HEADER_FATBUFFER_VERSION, plain.version());
+        var file = Files.createTempFile("viewbuffer", ".bin");
+        try {
+            for (var compact : new boolean[] { false, true }) {
+                for (var compression : new Compression[] { null, Compression.DEFAULT, Compression.chunked(4096) }) {
+                    var root = Documents.fleet(new ViewBufferArena().setWideFormat(true).setCompactingOffsets(compact));
+                    var bytes = root.asByteBuffer((short) 1, true, true, compression);
+                    var reader = ViewBufferReader.of(bytes);
+                    assertTrue(reader.isWide());
+                    assertEquals(HEADER_FATBUFFER_WIDE_VERSION, reader.version());
+                    assertEquals(compact, reader.hasCompactOffsets());
+                    assertArrayEquals(plain.relocationOffsets(), reader.relocationOffsets());
+                    assertEquals(plain.blob(), reader.blob()); // slice slots were already 8-byte pointers and lengths
+                    if (compression == null && !compact) assertEquals(plain.headerSize() + 8 + 4 + 4 * plain.offsetCount(), reader.headerSize());
+                    var tags = reader.root("Fleet").getSlice("devices").getStruct(199).getSlice("tags");
+                    assertEquals("gauge", tags.getStruct(0).getString("label"));
+
+                    // the 8-byte compressed size is back-patched alike by every write path
+                    var dst = ByteBuffer.allocate(root.maxSerializedSize(true, true, compression));
+                    root.writeTo(dst, (short) 1, true, true, compression);
+                    assertEquals(bytes.rewind(), dst.flip());
+                    root.writeBuffer(file.toString(), (short) 1, true, true, compression);
+                    assertEquals(bytes.rewind(), ByteBuffer.wrap(Files.readAllBytes(file)));
+                    var streamed = new ByteArrayOutputStream();
+                    root.writeTo(streamed, (short) 1, true, true, compression);
+                    assertEquals(bytes.rewind(), ByteBuffer.wrap(streamed.toByteArray()));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
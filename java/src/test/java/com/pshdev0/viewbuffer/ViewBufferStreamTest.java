@@ -0,0 +1,72 @@
+package com.pshdev0.viewbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewBufferStreamTest {
+
+    private static ViewBuffer buildDocument(ViewBufferArena arena) {
+        return Documents.transform(arena, Documents.steps(arena, 1000));
+    }
+
+    @Test
+    public void testOutputStreamMatchesByteBuffer() throws Exception {
+        for (var compress : new boolean[] { false, true }) {
+            var root = buildDocument(new ViewBufferArena());
+            var expected = Documents.toArray(root.asByteBuffer((short) 3, true, true, compress));
+
+            var out = new ByteArrayOutputStream();
+            var written = root.writeTo(out, (short) 3, true, true, compress);
+            assertEquals(expected.length, written);
+            assertArrayEquals(expected, out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testSeekableChannelBackPatchesCompressedSize() throws Exception {
+        var root = buildDocument(new ViewBufferArena());
+        var expected = Documents.toArray(root.asByteBuffer((short) 3, true, true, true));
+
+        var file = Files.createTempFile("viewbuffer", ".bin");
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 9, 9, 9 })); // a document need not start at position 0
+            root.writeTo(channel, (short) 3, true, true, true);
+        }
+
+        var actual = Files.readAllBytes(file);
+        Files.delete(file);
+        assertArrayEquals(expected, Arrays.copyOfRange(actual, 3, actual.length));
+
+        Documents.assertTransform(ViewBufferReader.of(ByteBuffer.wrap(actual, 3, actual.length - 3)), 1000);
+    }
+
+    @Test
+    public void testWriteToDirectByteBuffer() {
+        var root = buildDocument(new ViewBufferArena());
+        var size = root.serializedSize(true, true);
+        var dst = ByteBuffer.allocateDirect(size + 5);
+        dst.position(5); // written from the position onwards
+        for (var compression : new Compression[] { null, Compression.DEFAULT, Compression.chunked(4096) }) {
+            var expected = Documents.toArray(root.asByteBuffer((short) 3, true, true, compression));
+            var max = root.maxSerializedSize(true, true, compression);
+            assertTrue(max >= expected.length);
+            if (compression == null) assertEquals(expected.length, size);
+
+            // the same buffer is reused for every document
+            var written = root.writeTo(dst.clear().position(5), (short) 3, true, true, compression);
+            assertEquals(expected.length, written);
+            assertEquals(5 + written, dst.position());
+            assertArrayEquals(expected, Documents.toArray(dst.flip().position(5)));
+        }
+        assertThrows(BufferOverflowException.class, () -> root.writeTo(ByteBuffer.allocate(size - 1), (short) 3, true, true, null));
+    }
+}